@@ -0,0 +1,162 @@
+package Chatroom;
+
+import java.security.MessageDigest; // 암호화를 위한 도구라고 보면 된다.
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom; // 보안성이 강한 랜덤 숫자를 생성하기 위해 import한다.
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// --- [인증 전용 작업자 풀] ---
+// SHA-256 해시 계산은 CPU를 많이 쓰는 일이라, 서버 재시작 직후처럼 로그인이 한꺼번에 몰리면
+// 접속 처리 스레드(또는 NIO 이벤트 루프)들이 해시 계산에 붙잡혀 채팅 전체가 느려진다.
+// 그래서 회원가입/로그인을 크기가 정해진 별도 스레드 풀에서 처리한다.
+//    - 작업자 수 : -Dchat.auth.threads (기본값 CPU 코어 수)
+//    - 대기열 크기 : -Dchat.auth.queue (기본값 256). 가득 차면 기다리게 하지 않고 바로 BUSY로 거절한다.
+//    - 작업자 스레드마다 MessageDigest/SecureRandom을 하나씩 만들어 두고 계속 재사용한다.
+//    - 요청이 들어온 순간부터 결과가 나올 때까지의 시간(대기 + 해시)을 히스토그램에 기록한다.
+class AuthService {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+    private final ThreadPoolExecutor workers;
+    final LatencyHistogram latency = new LatencyHistogram();
+    final LongAdder rejected = new LongAdder();
+
+    AuthService(int threads, int queueCapacity) {
+        AtomicInteger seq = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "auth-" + seq.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    static AuthService fromSystemProperties() {
+        int threads = Integer.getInteger("chat.auth.threads", Runtime.getRuntime().availableProcessors());
+        int queue = Integer.getInteger("chat.auth.queue", 256);
+        return new AuthService(threads, queue);
+    }
+
+    // 주기적으로 인증 지연 시간 요약을 콘솔에 찍는다. (새 요청이 있었을 때만)
+    void startReporting(long periodSeconds) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "auth-report");
+            t.setDaemon(true);
+            return t;
+        });
+        long[] last = {0};
+        timer.scheduleAtFixedRate(() -> {
+            long n = latency.count();
+            if (n == last[0]) return;
+            last[0] = n;
+            System.out.println("[auth] " + latency.summary() + " queue=" + queueDepth() + " busy=" + rejected.sum());
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    int queueDepth() {
+        return workers.getQueue().size();
+    }
+
+    // 로그인 요청. 대기열이 가득 차 있으면 RejectedExecutionException으로 실패한 future를 돌려준다.
+    CompletableFuture<Boolean> authenticate(String userID, String password) {
+        return submit(() -> authenticateUser(userID, password));
+    }
+
+    // 회원가입 요청. 거절 규칙은 로그인과 같다.
+    CompletableFuture<Boolean> register(String userID, String password, String name, String email) {
+        return submit(() -> registerUser(userID, password, name, email));
+    }
+
+    private CompletableFuture<Boolean> submit(Supplier<Boolean> task) {
+        long start = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.get();
+                } finally {
+                    latency.recordNanos(System.nanoTime() - start);
+                }
+            }, workers);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // --- [회원가입 및 인증 로직] ---
+    // 사용자로부터 받은 정보 (ID, 비번, 이름, 이메일)를 저장합니다.
+    // 1. 중복 검사 : 메모리 색인(UserStore)에서 이미 존재하는 ID인지 확인한다.
+    // 2. 보안 저장 : 비밀번호는 그냥 저장하지 않고 Salt를 섞어 해시한 뒤 저장한다.
+    //    해시 계산은 어떤 락도 잡지 않은 상태에서 한다.
+    // 3. 기록 : UserStore가 ID를 원자적으로 선점하고 파일 끝에 한 줄을 덧붙인다.
+    //    클러스터로 묶여 있으면 다른 노드들에게도 같은 줄을 보내서 어느 노드에서든 로그인할 수 있게 한다.
+    static boolean registerUser(String userID, String password, String name, String email) {
+        if (ChatServer.users.contains(userID)) {
+            return false; // ID 중복
+        }
+        String salt = getSalt();
+        String hashedPassword = getHashedPassword(password, salt); // 암호화 (Hashing)
+        UserStore.UserRecord record = new UserStore.UserRecord(userID, hashedPassword, salt, name, email);
+        if (!ChatServer.users.add(record)) return false;
+        if (ChatServer.cluster != null) ChatServer.cluster.userRegistered(record); // 다른 노드들의 회원 명부에도 추가
+        return true;
+    }
+
+    // 로그인 인증 로직
+    // 사용자가 입력한 ID와 비밀번호가 맞는지 확인한다.
+    // 1. 색인 조회 : 메모리에서 해당 ID의 회원정보를 바로 찾는다. (파일 I/O 없음)
+    // 2. 해시 검증 : 저장된 Salt를 꺼내서 사용자가 입력한 비밀번호와 섞어 다시 해시를 만든다.
+    // 3. 비교 : 방금 만든 해시값과 저장된 해시값이 같으면 통과(True)이다.
+    static boolean authenticateUser(String userID, String password) {
+        UserStore.UserRecord user = ChatServer.users.get(userID);
+        if (user == null) return false; // ID가 없으면 실패한다.
+        // 입력된 비밀번호를 똑같은 방식으로 암호화해보고 일치하는지 확인한다.
+        return getHashedPassword(password, user.salt).equals(user.hashedPassword);
+    }
+
+    // Slat 생성 로직
+    // 비밀번호 보안을 강화하기 위히 랜덤한 바이트 배열 (Salt)를 생성한다.
+    // 같은 비밀번호라도 Salt가 다르면 저장되는 해시값이 달라져서 해킹이 어려워진다.
+    // SecureRandom은 만들 때 비용이 크므로 스레드마다 하나를 만들어 재사용한다.
+    static String getSalt() {
+        byte[] salt = new byte[16];
+        RANDOM.get().nextBytes(salt);
+        return bytesToHex(salt);
+    }
+
+    // 비밀번호 해시화
+    // SHA-256 알고리즘을 사용하여 (비밀번호 + Salt)를 복호화 불가능한 문자열로 변환한다.
+    // MessageDigest도 스레드마다 하나를 재사용한다. (digest()가 끝나면 자동으로 초기화된다)
+    static String getHashedPassword(String password, String salt) {
+        MessageDigest md = SHA256.get();
+        md.update(salt.getBytes());
+        byte[] hashedPassword = md.digest(password.getBytes());
+        return bytesToHex(hashedPassword);
+    }
+
+    static String bytesToHex(byte[] hash) {
+        StringBuilder hexString = new StringBuilder(2 * hash.length);
+        for (byte b : hash) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) hexString.append('0');
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+}
@@ -1,301 +1,575 @@
-package Chatroom;
-
-import java.awt.BorderLayout;
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Font;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.Socket;
-import java.util.Scanner;
-
-import javax.swing.BorderFactory;
-import javax.swing.DefaultListModel;
-import javax.swing.JButton;
-import javax.swing.JFrame;
-import javax.swing.JLabel;
-import javax.swing.JList;
-import javax.swing.JOptionPane;
-import javax.swing.JPanel;
-import javax.swing.JPasswordField;
-import javax.swing.JScrollPane;
-import javax.swing.JTextArea;
-import javax.swing.JTextField;
-import javax.swing.ListSelectionModel;
-import javax.swing.SwingUtilities;
-import javax.swing.UIManager;
-import javax.swing.event.ListSelectionEvent;
-import javax.swing.event.ListSelectionListener;
-
-/**
- * ChatClient 클래스
- * * [출처 및 기여 명시]
- * 본 소스 코드의 GUI 디자인 및 레이아웃 구현, 이벤트 처리 구조(Swing)와 관련된 부분들 중 일부는
- * AI 모델(GPT)의 도움을 받아 작성 및 개선되었습니다.
- */
-public class ChatClient {
-
-    // 서버 연결 정보
-    String serverAddress;
-    int serverPort;
-
-    // 입출력 도구
-    Scanner in;
-    PrintWriter out;
-
-    String myName;     // 내 아이디를 기억해둔다. (접속자 목록에서 'myName'에 해당하는 사항은 제외 예정)
-
-    // --- GUI Components (화면 구성요소) ---
-    // ※ 이 아래의 GUI 구성 요소 및 배치 로직은 AI의 제안을 바탕으로 작성되었습니다.
-    JFrame frame = new JFrame("Chatter"); // 전체 윈도우 창
-    JTextField textField = new JTextField(40); // 메시지 입력하는 칸
-    JTextArea messageArea = new JTextArea(16, 50); // 채팅 로그가 찍히는 큰 화면
-
-    // 접속자 목록 UI
-    // DefaultListModel : 리스트에 데이터를 추가/삭제하기 쉽게 도와주는 모델 객체이다.
-    // JList는 View일 뿐, 실제 데이터는 DefaultListModel이 관리한다.
-    // 데이터를 추가하거나 삭제할 때에는 Model을 건드리면 JList가 알아서 화면을 바꿔준다.
-    DefaultListModel<String> userListModel = new DefaultListModel<>();
-    JList<String> userList = new JList<>(userListModel); // 모델을 화면에 보여주는 뷰(View)
-
-    // 귓속말 대상 관리
-    // 기본값은 "Everyone"이고, 리스트에서 특정 상대방을 선택하면, 그 사람의 ID값으로 바뀌게 된다.
-    private String currentRecipient = "Everyone";
-    JLabel targetLabel = new JLabel("To: 전체 (Everyone)");
-
-    // 생성자 : 화면(GUI)을 조립하고 이벤트를 연결하는 곳
-    public ChatClient(String serverAddress, int serverPort) {
-        this.serverAddress = serverAddress;
-        this.serverPort = serverPort;
-
-        // 1. UI 스타일 및 레이아웃 설정
-        textField.setEditable(false); // 로그인 전에는 채팅 입력 불가
-        messageArea.setEditable(false); // 채팅 내역은 사용자가 지우거나 쓸 수 없어야 하니, 읽기 전용으로 한다.
-        messageArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
-        messageArea.setLineWrap(true); // 글자가 길어지면 자동으로 줄바꿈
-
-        // JScrollPane : 내용이 많아지면 스크롤바가 생기게 해준다.
-        JScrollPane messageScroll = new JScrollPane(messageArea);
-        messageScroll.setBorder(BorderFactory.createTitledBorder("채팅 내용"));
-
-        userList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION); // 한 번에 한 명만 선택 가능
-        userList.setFont(new Font("SansSerif", Font.PLAIN, 13));
-        JScrollPane listScroll = new JScrollPane(userList);
-        listScroll.setPreferredSize(new Dimension(150, 0)); // 목록창의 너비 고정
-        listScroll.setBorder(BorderFactory.createTitledBorder("접속자 목록"));
-
-        // 하단 입력 패널 (South)
-        JPanel bottomPanel = new JPanel(new BorderLayout(5, 5)); // BorderLayout : 동서남북 중앙 배치 관리자
-        bottomPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
-
-        // 대상 표시 라벨 스타일 (누구한테 보낼지 알려주는 텍스트)
-        targetLabel.setFont(new Font("SansSerif", Font.BOLD, 12));
-        targetLabel.setForeground(Color.DARK_GRAY);
-        targetLabel.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 5));
-
-        JPanel inputPanel = new JPanel(new BorderLayout(5, 0));
-        inputPanel.add(targetLabel, BorderLayout.NORTH); // "To: 전체" 라벨
-        inputPanel.add(textField, BorderLayout.CENTER);  // 입력창
-
-        JButton sendButton = new JButton("전송");
-        inputPanel.add(sendButton, BorderLayout.EAST);   // 전송 버튼
-
-        bottomPanel.add(inputPanel, BorderLayout.CENTER);
-
-        // 프레임(윈도우)에 조립한 패널들을 배치한다.
-        frame.getContentPane().setLayout(new BorderLayout()); // 전체 Window또한 BorderLayout을 사용한다.
-        frame.getContentPane().add(messageScroll, BorderLayout.CENTER); // 가운데에 채팅창
-        frame.getContentPane().add(listScroll, BorderLayout.EAST); // 오른쪽에 목록
-        frame.getContentPane().add(bottomPanel, BorderLayout.SOUTH); // 아래쪽에 입력창
-        frame.pack(); // 컴포넌트 크기에 맞춰서 창 크기 자동 조절
-
-
-        // [1] 접속자 목록 클릭 리스너 (귓속말 대상 변경 로직)
-        // 사용자가 오른쪽 목록에서 누군가를 클릭했을 때 실행된다.
-        userList.addListSelectionListener(new ListSelectionListener() {
-            @Override
-            public void valueChanged(ListSelectionEvent e) {
-                // Value Changed는 누르는 순간과 떼는 순간 두번 발생한다.
-                // getValueIsAdjusting()이 false일 때만 처리해야 중복 실행을 방지한다.
-                if (!e.getValueIsAdjusting()) {
-                    String selected = userList.getSelectedValue();
-                    // 선택이 없거나 '전체보내기'를 클릭했을 떄
-                    if (selected == null || selected.contains("전체보내기")) {
-                        currentRecipient = "Everyone"; // 타겟을 'Everyone'으로 설정한다
-                        targetLabel.setText("To: 전체 (Everyone)");
-                        targetLabel.setForeground(Color.DARK_GRAY);
-                    } else {
-                        // 특정 사람을 클릭했을 때
-                        currentRecipient = selected; // 선택된 사람의 ID로 설정한다.
-                        targetLabel.setText("To: " + selected + " (귓속말)");
-                        targetLabel.setForeground(Color.MAGENTA);
-                    }
-                }
-            }
-        });
-
-        // 엔터키와 전송 버튼 클릭시 메세지를 보내는 과정이다.
-        ActionListener sendAction = new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                String msg = textField.getText();
-                if (msg.isEmpty()) return; // 빈 메시지는 보내지 않는다.
-
-                // 현재 설정된 대상(currentRecipient)에 따라 보내는 명령어가 달라진다.
-                if (currentRecipient.equalsIgnoreCase("Everyone")) {
-                    out.println(msg); // 그냥 보내면 서버가 알아서 전체에게 뿌린다.
-                } else {
-                    // "/whisper 대상 메시지" 형태로 만들어서 서버에 전송한다.
-                    out.println("/whisper " + currentRecipient + " " + msg);
-                }
-                textField.setText(""); // 입력창 비우기
-                textField.requestFocus(); // 다시 입력창에 커서 두기
-            }
-        };
-        // 입력창에서 엔터 쳤을 때, 전송 버튼 눌렀을 때 둘 다 sendAction을 실행한다.
-        textField.addActionListener(sendAction);
-        sendButton.addActionListener(sendAction);
-    }
-
-    // 프로그램 시작 시 로그인/회원가입/종료를 묻는 첫 번째 관문이다.
-    private String getAuthenticationCommand() {
-        Object[] options = {"로그인", "회원가입", "종료"};
-        int choice = JOptionPane.showOptionDialog(frame,
-                "환영합니다! 접속 정보를 입력하세요.", "Chatter 인증",
-                JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE,
-                null, options, options[0]);
-
-        if (choice == 0) return showLoginDialog();
-        else if (choice == 1) return showRegisterDialog();
-        else { System.exit(0); return null; }
-    }
-
-    // 로그인 입력창을 띄우고, 사용자가 입력한 정보를 "LOGIN 아이디 비번" 문자열로 만든다.
-    private String showLoginDialog() {
-        JTextField idField = new JTextField();
-        JPasswordField passField = new JPasswordField();
-        Object[] message = {"아이디:", idField, "비밀번호:", passField};
-        int option = JOptionPane.showConfirmDialog(frame, message, "로그인", JOptionPane.OK_CANCEL_OPTION);
-        if (option == JOptionPane.OK_OPTION) {
-            return "LOGIN " + idField.getText().trim() + " " + new String(passField.getPassword()).trim();
-        }
-        return "";
-    }
-
-    private String showRegisterDialog() {
-        JTextField idField = new JTextField();
-        JPasswordField passField = new JPasswordField();
-        JTextField nameField = new JTextField();
-        JTextField emailField = new JTextField();
-        Object[] message = {"아이디:", idField, "비밀번호:", passField, "이름:", nameField, "이메일:", emailField};
-        int option = JOptionPane.showConfirmDialog(frame, message, "회원가입", JOptionPane.OK_CANCEL_OPTION);
-        if (option == JOptionPane.OK_OPTION) {
-            return "REGISTER " + idField.getText().trim() + " " + new String(passField.getPassword()).trim() +
-                    " " + nameField.getText().trim() + " " + emailField.getText().trim();
-        }
-        return "";
-    }
-
-    private void run() throws IOException {
-        try {
-            Socket socket = new Socket(serverAddress, serverPort);
-            in = new Scanner(socket.getInputStream());
-            out = new PrintWriter(socket.getOutputStream(), true);
-
-            while (in.hasNextLine()) {
-                String line = in.nextLine();
-
-                // 1. 접속자 명단 업데이트 프로토콜 (/userlist id1,id2,...)
-                // 서버가 "누가 접속해 있는지" 알려주면 GUI 목록을 갱신해야 한다.
-                if (line.startsWith("/userlist ")) {
-                    String[] users = line.substring(10).split(",");
-
-                    // 네트워크 스레드(지금 이 곳)에서 직접 GUI(Swing)를 건드리면 프로그램이 멈출 수 있다.
-                    // 그래서 "SwingUtilities.invokeLater"를 써서 GUI 전용 스레드에게 작업을 부탁해야 한다.
-                    SwingUtilities.invokeLater(() -> {
-                        String currentSelection = userList.getSelectedValue();
-                        userListModel.clear();
-                        userListModel.addElement(" [ 전체보내기 ] ");
-                        for (String user : users) {
-                            if (!user.isEmpty() && !user.equals(myName)) {
-                                userListModel.addElement(user);
-                            }
-                        }
-                        if (currentSelection != null && userListModel.contains(currentSelection)) {
-                            userList.setSelectedValue(currentSelection, true);
-                        }
-                    });
-                }
-                // 2. 인증 요청 (서버가 "이름 대세요" 함)
-                else if (line.startsWith("SUBMITNAME")) {
-                    String cmd = getAuthenticationCommand(); // 팝업창 띄워서 입력받음
-                    if (cmd != null && !cmd.isEmpty()) out.println(cmd); // 서버로 전송
-                }
-                // 3. 로그인 성공
-                else if (line.startsWith("LOGIN_SUCCESS")) {
-                    myName = line.substring(14); // "LOGIN_SUCCESS 아이디" 에서 아이디만 잘라냄
-                    frame.setTitle("Chatter - 접속자: " + myName);
-                    textField.setEditable(true);
-                    messageArea.append("=== 로그인 성공! 우측 목록에서 대상을 선택하여 귓속말을 할 수 있습니다. ===\n");
-                }
-                // 4. 기타 메시지 처리 (시스템 메시지, 채팅 등)
-                else if (line.startsWith("LOGIN_FAIL")) {
-                    JOptionPane.showMessageDialog(frame, "로그인 실패: " + line.substring(11));
-                } else if (line.startsWith("REGISTER_SUCCESS")) {
-                    JOptionPane.showMessageDialog(frame, "회원가입 성공! 로그인해주세요.");
-                } else if (line.startsWith("REGISTER_FAIL")) {
-                    JOptionPane.showMessageDialog(frame, "회원가입 실패: " + line.substring(14));
-                } else if (line.startsWith("MESSAGE")) {
-                    // 실제 채팅 메시지가 오면 화면에 보여준다.
-                    messageArea.append(line.substring(8) + "\n");
-                    // 스크롤을 항상 맨 아래(최신 메시지)로 내린다.
-                    messageArea.setCaretPosition(messageArea.getDocument().getLength());
-                }
-            }
-        } finally {
-            // 루프를 빠져나오면 (서버 연결 끊김 등) 창을 닫는다.
-            frame.setVisible(false);
-            frame.dispose();
-        }
-    }
-
-    public static void main(String[] args) throws Exception {
-        // Nimbus Look and Feel 적용
-        // 자바 기본 GUI는 좀 투박해서, 좀 더 세련된 'Nimbus' 스타일을 입힌다.
-        // (이 부분-> 디자인 개선의 일환으로 AI가 제안함)
-        try {
-            for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
-                if ("Nimbus".equals(info.getName())) {
-                    UIManager.setLookAndFeel(info.getClassName());
-                    break;
-                }
-            }
-        } catch (Exception e) {
-            // Nimbus가 없으면 그냥 기본 스타일로 간다.
-        }
-
-        // 설정 파일(server_info2.dat) 로드 로직
-        // 매번 코드를 수정하지 않고도 접속할 서버 IP를 파일로 관리하기 위함이다.
-        String ip = "127.0.0.1"; // 기본값 (내 컴퓨터)
-        int port = 59001;        // 기본값
-        File file = new File("server_info2.dat");
-        if (file.exists() && !file.isDirectory()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                String lineIP = br.readLine();
-                String linePort = br.readLine();
-                if (lineIP != null) ip = lineIP.trim();
-                if (linePort != null) port = Integer.parseInt(linePort.trim());
-            } catch (Exception e) {}
-        }
-
-        // 클라이언트 객체 생성 및 화면 표시
-        ChatClient client = new ChatClient(ip, port);
-        client.frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // X 버튼 누르면 프로그램 종료
-        client.frame.setVisible(true); // 창 띄우기
-        client.run(); // 통신 시작!
-    }
-}
\ No newline at end of file
+package Chatroom;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JPasswordField;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+
+/**
+ * ChatClient 클래스
+ * * [출처 및 기여 명시]
+ * 본 소스 코드의 GUI 디자인 및 레이아웃 구현, 이벤트 처리 구조(Swing)와 관련된 부분들 중 일부는
+ * AI 모델(GPT)의 도움을 받아 작성 및 개선되었습니다.
+ */
+public class ChatClient {
+
+    static final int DEFAULT_PORT = 59001;
+    static final int CONNECT_TIMEOUT_MS = 2000;
+    // 다시 연결할 때 기다리는 시간 : 실패할 때마다 두 배로 늘리되 maxMs를 넘지 않는다.
+    // 실제로는 그 절반 ~ 전부 사이에서 무작위로 골라 기다린다. (jitter)
+    // 서버가 재시작하면 모든 클라이언트가 한꺼번에 끊기는데, 다 같은 간격으로 다시 붙으면 또 한꺼번에 몰리기 때문이다.
+    static final long BACKOFF_BASE_MS = Long.getLong("chat.reconnect.baseMs", 500);
+    static final long BACKOFF_MAX_MS = Long.getLong("chat.reconnect.maxMs", 30000);
+    // 서버는 조용한 연결에 pingMs(기본 30초)마다 PING을 보낸다. 이만큼 아무것도 오지 않으면
+    // 서버나 네트워크가 죽은 것으로 보고 끊은 뒤 다시 연결한다. (0이면 끝없이 기다린다)
+    static final int IDLE_TIMEOUT_MS = Integer.getInteger("chat.idle.timeoutMs", 90000);
+
+    // 서버 연결 정보
+    // server_info2.dat에 적힌 서버들. 시작할 때 잰 연결 시간이 짧은 순서로 정렬되어 있다.
+    // 연결할 때는 앞에서부터 차례로 시도하므로, 가장 가까운 서버가 죽으면 자동으로 다음 서버로 넘어간다.
+    final List<Endpoint> endpoints;
+    Endpoint current; // 지금 연결된 서버
+
+    String resumeToken;        // 서버가 LOGIN_SUCCESS와 함께 준 재접속용 토큰 (다시 연결할 때 비밀번호 대신 쓴다)
+    boolean loggedIn;          // 이번 연결에서 로그인까지 마쳤는지 (backoff를 처음부터 다시 셀지 정한다)
+    volatile boolean quitting; // 사용자가 /quit 했으면 다시 연결하지 않는다.
+    long restartHintMs = -1;   // 서버가 SERVER_RESTART로 알려 준 "이만큼 기다렸다가 다시 연결" (없으면 -1)
+
+    // 입출력 도구
+    // 받는 쪽은 WireCodec.Decoder가 텍스트 줄이든 바이너리 프레임이든 (명령, 인자)로 풀어 준다.
+    // 보내는 쪽은 send()가 협상 결과에 맞춰 텍스트 한 줄 또는 바이너리 프레임으로 보낸다.
+    InputStream in;
+    volatile OutputStream out; // 창 스레드(dialogs)가 "아직 같은 연결인지" 볼 때도 읽는다.
+    WireCodec.Decoder decoder = new WireCodec.Decoder(false);
+    volatile boolean binary; // 서버가 PROTO_OK를 보내면 true
+
+    // 로그인/회원가입 창과 결과 알림은 이 스레드에서 하나씩 차례로 띄운다.
+    // 읽는 스레드(session)가 창이 닫히기를 기다리면 그동안 서버의 PING에 답하지 못해서 연결이 끊기므로,
+    // 읽기는 계속하고 창만 따로 띄운다. (예전처럼 "로그인 실패" 알림 -> 다시 로그인 창 순서는 그대로다)
+    private final ExecutorService dialogs = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "chat-dialog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    String myName;     // 내 아이디를 기억해둔다. (접속자 목록에서 'myName'에 해당하는 사항은 제외 예정)
+
+    // --- GUI Components (화면 구성요소) ---
+    // ※ 이 아래의 GUI 구성 요소 및 배치 로직은 AI의 제안을 바탕으로 작성되었습니다.
+    JFrame frame = new JFrame("Chatter"); // 전체 윈도우 창
+    JTextField textField = new JTextField(40); // 메시지 입력하는 칸
+    JTextArea messageArea = new JTextArea(16, 50); // 채팅 로그가 찍히는 큰 화면
+    // 메시지 창에 줄을 붙이는 곳. 어느 스레드에서 불러도 되고, 한 프레임 동안 모아서 한 번에 그린다.
+    MessageView messages = new MessageView(messageArea, MessageView.SCROLLBACK);
+
+    // 접속자 목록 UI
+    // DefaultListModel : 리스트에 데이터를 추가/삭제하기 쉽게 도와주는 모델 객체이다.
+    // JList는 View일 뿐, 실제 데이터는 DefaultListModel이 관리한다.
+    // 데이터를 추가하거나 삭제할 때에는 Model을 건드리면 JList가 알아서 화면을 바꿔준다.
+    DefaultListModel<String> userListModel = new DefaultListModel<>();
+    JList<String> userList = new JList<>(userListModel); // 모델을 화면에 보여주는 뷰(View)
+    JScrollPane listScroll = new JScrollPane(userList); // 제목에 지금 방 이름을 표시한다.
+
+    // 귓속말 대상 관리
+    // 기본값은 "Everyone"이고, 리스트에서 특정 상대방을 선택하면, 그 사람의 ID값으로 바뀌게 된다.
+    private String currentRecipient = "Everyone";
+    JLabel targetLabel = new JLabel("To: 전체 (Everyone)");
+
+    // 생성자 : 화면(GUI)을 조립하고 이벤트를 연결하는 곳
+    public ChatClient(List<Endpoint> endpoints) {
+        this.endpoints = endpoints;
+
+        // 1. UI 스타일 및 레이아웃 설정
+        textField.setEditable(false); // 로그인 전에는 채팅 입력 불가
+        messageArea.setEditable(false); // 채팅 내역은 사용자가 지우거나 쓸 수 없어야 하니, 읽기 전용으로 한다.
+        messageArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        messageArea.setLineWrap(true); // 글자가 길어지면 자동으로 줄바꿈
+
+        // JScrollPane : 내용이 많아지면 스크롤바가 생기게 해준다.
+        JScrollPane messageScroll = new JScrollPane(messageArea);
+        messageScroll.setBorder(BorderFactory.createTitledBorder("채팅 내용"));
+
+        userList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION); // 한 번에 한 명만 선택 가능
+        userList.setFont(new Font("SansSerif", Font.PLAIN, 13));
+        listScroll.setPreferredSize(new Dimension(150, 0)); // 목록창의 너비 고정
+        listScroll.setBorder(BorderFactory.createTitledBorder("접속자 목록"));
+
+        // 하단 입력 패널 (South)
+        JPanel bottomPanel = new JPanel(new BorderLayout(5, 5)); // BorderLayout : 동서남북 중앙 배치 관리자
+        bottomPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        // 대상 표시 라벨 스타일 (누구한테 보낼지 알려주는 텍스트)
+        targetLabel.setFont(new Font("SansSerif", Font.BOLD, 12));
+        targetLabel.setForeground(Color.DARK_GRAY);
+        targetLabel.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 5));
+
+        JPanel inputPanel = new JPanel(new BorderLayout(5, 0));
+        inputPanel.add(targetLabel, BorderLayout.NORTH); // "To: 전체" 라벨
+        inputPanel.add(textField, BorderLayout.CENTER);  // 입력창
+
+        JButton sendButton = new JButton("전송");
+        inputPanel.add(sendButton, BorderLayout.EAST);   // 전송 버튼
+
+        bottomPanel.add(inputPanel, BorderLayout.CENTER);
+
+        // 프레임(윈도우)에 조립한 패널들을 배치한다.
+        frame.getContentPane().setLayout(new BorderLayout()); // 전체 Window또한 BorderLayout을 사용한다.
+        frame.getContentPane().add(messageScroll, BorderLayout.CENTER); // 가운데에 채팅창
+        frame.getContentPane().add(listScroll, BorderLayout.EAST); // 오른쪽에 목록
+        frame.getContentPane().add(bottomPanel, BorderLayout.SOUTH); // 아래쪽에 입력창
+        frame.pack(); // 컴포넌트 크기에 맞춰서 창 크기 자동 조절
+
+
+        // [1] 접속자 목록 클릭 리스너 (귓속말 대상 변경 로직)
+        // 사용자가 오른쪽 목록에서 누군가를 클릭했을 때 실행된다.
+        userList.addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                // Value Changed는 누르는 순간과 떼는 순간 두번 발생한다.
+                // getValueIsAdjusting()이 false일 때만 처리해야 중복 실행을 방지한다.
+                if (!e.getValueIsAdjusting()) {
+                    String selected = userList.getSelectedValue();
+                    // 선택이 없거나 '전체보내기'를 클릭했을 떄
+                    if (selected == null || selected.contains("전체보내기")) {
+                        currentRecipient = "Everyone"; // 타겟을 'Everyone'으로 설정한다
+                        targetLabel.setText("To: 전체 (Everyone)");
+                        targetLabel.setForeground(Color.DARK_GRAY);
+                    } else {
+                        // 특정 사람을 클릭했을 때
+                        currentRecipient = selected; // 선택된 사람의 ID로 설정한다.
+                        targetLabel.setText("To: " + selected + " (귓속말)");
+                        targetLabel.setForeground(Color.MAGENTA);
+                    }
+                }
+            }
+        });
+
+        // 엔터키와 전송 버튼 클릭시 메세지를 보내는 과정이다.
+        ActionListener sendAction = new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                String msg = textField.getText();
+                if (msg.isEmpty()) return; // 빈 메시지는 보내지 않는다.
+
+                // 현재 설정된 대상(currentRecipient)에 따라 보내는 명령어가 달라진다.
+                if (currentRecipient.equalsIgnoreCase("Everyone")) {
+                    send(msg); // 그냥 보내면 서버가 알아서 전체에게 뿌린다.
+                } else {
+                    // "/whisper 대상 메시지" 형태로 만들어서 서버에 전송한다.
+                    send("/whisper " + currentRecipient + " " + msg);
+                }
+                textField.setText(""); // 입력창 비우기
+                textField.requestFocus(); // 다시 입력창에 커서 두기
+            }
+        };
+        // 입력창에서 엔터 쳤을 때, 전송 버튼 눌렀을 때 둘 다 sendAction을 실행한다.
+        textField.addActionListener(sendAction);
+        sendButton.addActionListener(sendAction);
+    }
+
+    // 프로그램 시작 시 로그인/회원가입/종료를 묻는 첫 번째 관문이다.
+    private String getAuthenticationCommand() {
+        Object[] options = {"로그인", "회원가입", "종료"};
+        int choice = JOptionPane.showOptionDialog(frame,
+                "환영합니다! 접속 정보를 입력하세요.", "Chatter 인증",
+                JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE,
+                null, options, options[0]);
+
+        if (choice == 0) return showLoginDialog();
+        else if (choice == 1) return showRegisterDialog();
+        else { System.exit(0); return null; }
+    }
+
+    // 로그인 입력창을 띄우고, 사용자가 입력한 정보를 "LOGIN 아이디 비번" 문자열로 만든다.
+    private String showLoginDialog() {
+        JTextField idField = new JTextField();
+        JPasswordField passField = new JPasswordField();
+        Object[] message = {"아이디:", idField, "비밀번호:", passField};
+        int option = JOptionPane.showConfirmDialog(frame, message, "로그인", JOptionPane.OK_CANCEL_OPTION);
+        if (option == JOptionPane.OK_OPTION) {
+            return "LOGIN " + idField.getText().trim() + " " + new String(passField.getPassword()).trim();
+        }
+        return "";
+    }
+
+    private String showRegisterDialog() {
+        JTextField idField = new JTextField();
+        JPasswordField passField = new JPasswordField();
+        JTextField nameField = new JTextField();
+        JTextField emailField = new JTextField();
+        Object[] message = {"아이디:", idField, "비밀번호:", passField, "이름:", nameField, "이메일:", emailField};
+        int option = JOptionPane.showConfirmDialog(frame, message, "회원가입", JOptionPane.OK_CANCEL_OPTION);
+        if (option == JOptionPane.OK_OPTION) {
+            return "REGISTER " + idField.getText().trim() + " " + new String(passField.getPassword()).trim() +
+                    " " + nameField.getText().trim() + " " + emailField.getText().trim();
+        }
+        return "";
+    }
+
+    // 서버로 명령 한 줄을 보낸다. (EDT와 네트워크 스레드 양쪽에서 불리므로 synchronized)
+    // 바이너리로 협상됐으면 같은 명령을 바이너리 프레임으로 바꿔서 보낸다.
+    synchronized void send(String line) {
+        if (line.toLowerCase().startsWith("/quit")) quitting = true;
+        try {
+            out.write(binary ? WireCodec.encodeLine(line, true) : (line + "\n").getBytes(Frame.CHARSET));
+            out.flush();
+        } catch (IOException e) {
+            // 연결이 끊겼다. 읽는 쪽(run)이 곧 끝나면서 창을 닫는다.
+        }
+    }
+
+    // 연결 -> 대화 -> 끊기면 잠시 기다렸다가 다시 연결. 사용자가 /quit 하거나 창을 닫을 때까지 계속한다.
+    private void run() {
+        long backoff = BACKOFF_BASE_MS;
+        try {
+            while (!quitting) {
+                Socket socket = connect();
+                if (socket != null) {
+                    loggedIn = false;
+                    try {
+                        session(socket);
+                    } catch (IOException e) {
+                        // 연결이 끊겼다.
+                    } finally {
+                        try { socket.close(); } catch (IOException e) {}
+                    }
+                    if (quitting) break;
+                    // 로그인까지 했던 연결이면 일시적인 끊김으로 보고 처음 간격부터 다시 센다.
+                    // (접속하자마자 끊기는 서버에 계속 짧은 간격으로 붙지 않기 위함)
+                    if (loggedIn) backoff = BACKOFF_BASE_MS;
+                }
+                long wait;
+                String where;
+                if (restartHintMs >= 0) {
+                    // 서버가 재시작한다고 미리 알려 줬다. 모두가 같은 순간에 돌아오지 않도록
+                    // 알려 준 시간 ~ 그 두 배 사이에서 무작위로 기다린다. (그 뒤 토큰으로 RESUME)
+                    wait = restartHintMs + ThreadLocalRandom.current().nextLong(restartHintMs + 1);
+                    where = "서버(" + current + ")가 다시 시작합니다.";
+                    restartHintMs = -1;
+                } else {
+                    wait = ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+                    where = socket != null ? "서버(" + current + ") 연결이 끊겼습니다." : "접속할 수 있는 서버가 없습니다.";
+                }
+                SwingUtilities.invokeLater(() -> {
+                    textField.setEditable(false);
+                    userListModel.clear();
+                });
+                messages.append("=== " + where + " " + (wait / 1000.0) + "초 후 다시 연결합니다... ===");
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, BACKOFF_MAX_MS);
+            }
+        } finally {
+            // 사용자가 끝냈으면 창을 닫는다.
+            frame.setVisible(false);
+            frame.dispose();
+        }
+    }
+
+    // 서버 목록을 (연결 시간이 짧은 순서로) 차례로 시도해서 처음 연결되는 곳을 쓴다. 모두 안 되면 null.
+    // -Dchat.tls=true 이면 TLS 핸드셰이크까지 마친 소켓을 준다. (같은 서버에 다시 붙을 때는 세션을 재개한다)
+    private Socket connect() {
+        for (Endpoint endpoint : endpoints) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(endpoint.host, endpoint.port), CONNECT_TIMEOUT_MS);
+                if (TlsSupport.clientEnabled()) {
+                    socket.setSoTimeout(CONNECT_TIMEOUT_MS); // 핸드셰이크도 연결 시간 안에 끝나야 한다.
+                    socket = TlsSupport.wrapClient(socket, endpoint.host, endpoint.port);
+                }
+                current = endpoint;
+                return socket;
+            } catch (IOException | GeneralSecurityException e) {
+                try { socket.close(); } catch (IOException ignored) {}
+            }
+        }
+        return null;
+    }
+
+    // 연결 하나가 살아 있는 동안의 대화. 연결이 끊기면 돌아온다.
+    private void session(Socket socket) throws IOException {
+        in = socket.getInputStream();
+        out = socket.getOutputStream();
+        decoder = new WireCodec.Decoder(false); // 연결마다 협상을 새로 한다.
+        binary = false;
+        socket.setSoTimeout(IDLE_TIMEOUT_MS); // 넘으면 read()가 SocketTimeoutException을 던진다. -> 다시 연결
+
+        // 바이너리 프로토콜 협상 (-Dchat.protocol=text 로 끄면 예전처럼 텍스트만 쓴다)
+        // 새 서버 : SUBMITNAME -> PROTO_OK -> (바이너리) SUBMITNAME
+        // 예전 서버 : SUBMITNAME -> SUBMITNAME  (PROTO 줄을 모르는 명령으로 본다)
+        // 압축도 같이 요청한다. (-Dchat.wire.deflate=false 로 끈다) 압축을 모르거나 끈 서버는 그냥 PROTO_OK BINARY로 답한다.
+        // 그래서 협상 중에 오는 첫 SUBMITNAME은 건너뛰고, 두 번째가 오면 텍스트로 계속 간다.
+        boolean negotiating = !"text".equalsIgnoreCase(System.getProperty("chat.protocol", "binary"));
+        boolean skippedSubmit = false;
+        if (negotiating) send(WireCodec.DEFLATE ? WireCodec.PROTO_HELLO_DEFLATE : WireCodec.PROTO_HELLO);
+
+        while (decoder.read(in)) {
+            String args = decoder.args;
+
+            switch (decoder.op) {
+                case PROTO_OK:
+                    binary = true; // 이제부터 보내는 것도 바이너리
+                    negotiating = false;
+                    break;
+
+                // 서버가 살아 있는지 묻는다. 화면에는 아무것도 보이지 않고 바로 답한다.
+                case PING:
+                    send("PONG");
+                    break;
+
+                // 서버가 곧 꺼진다. (SERVER_RESTART 기다릴ms 재접속토큰)
+                // 새 토큰을 받아 두고 먼저 끊는다. run()이 잠시 기다렸다가 다시 연결해서 RESUME 한다.
+                case SERVER_RESTART: {
+                    String[] parts = args.split(" ", 2);
+                    try {
+                        restartHintMs = Math.max(0, Long.parseLong(parts[0]));
+                    } catch (NumberFormatException e) {
+                        restartHintMs = BACKOFF_BASE_MS;
+                    }
+                    if (parts.length > 1) resumeToken = parts[1];
+                    return;
+                }
+
+                // 1. 접속자 명단 업데이트 프로토콜
+                // 서버가 "누가 접속해 있는지" 알려주면 GUI 목록을 갱신해야 한다.
+                //    - /userlist id1,id2,... : 로그인 직후 한 번 받는 전체 명단 (목록을 새로 만든다)
+                //    - /userjoin id1,id2,... : 누군가 들어왔다 (들어온 사람만 추가)
+                //    - /userleave id1,id2,...: 누군가 나갔다 (나간 사람만 삭제)
+                case USERLIST: {
+                    String[] users = args.split(",");
+
+                    // 네트워크 스레드(지금 이 곳)에서 직접 GUI(Swing)를 건드리면 프로그램이 멈출 수 있다.
+                    // 그래서 "SwingUtilities.invokeLater"를 써서 GUI 전용 스레드에게 작업을 부탁해야 한다.
+                    SwingUtilities.invokeLater(() -> {
+                        String currentSelection = userList.getSelectedValue();
+                        userListModel.clear();
+                        userListModel.addElement(" [ 전체보내기 ] ");
+                        for (String user : users) {
+                            if (!user.isEmpty() && !user.equals(myName)) {
+                                userListModel.addElement(user);
+                            }
+                        }
+                        if (currentSelection != null && userListModel.contains(currentSelection)) {
+                            userList.setSelectedValue(currentSelection, true);
+                        }
+                    });
+                    break;
+                }
+                case USERJOIN: {
+                    String[] users = args.split(",");
+                    SwingUtilities.invokeLater(() -> {
+                        for (String user : users) {
+                            // 전체 명단과 겹쳐서 올 수도 있으므로 이미 있으면 넣지 않는다.
+                            if (!user.isEmpty() && !user.equals(myName) && !userListModel.contains(user)) {
+                                userListModel.addElement(user);
+                            }
+                        }
+                    });
+                    break;
+                }
+                case USERLEAVE: {
+                    String[] users = args.split(",");
+                    // 선택되어 있던 사람이 나가면 선택이 풀리면서 대상이 자동으로 '전체'로 돌아간다.
+                    SwingUtilities.invokeLater(() -> {
+                        for (String user : users) {
+                            userListModel.removeElement(user);
+                        }
+                    });
+                    break;
+                }
+                // 방 이동 알림 (/room 방이름)
+                // 곧이어 그 방의 전체 명단(/userlist)이 오므로 여기서는 제목만 바꾼다.
+                case ROOM:
+                    SwingUtilities.invokeLater(() -> {
+                        frame.setTitle("Chatter - 접속자: " + myName + " [방: " + args + "]");
+                        listScroll.setBorder(BorderFactory.createTitledBorder("접속자 목록 (" + args + ")"));
+                    });
+                    messages.append("=== '" + args + "' 방에 들어왔습니다. (/join 방이름, /leave, /rooms, /search 단어) ===");
+                    break;
+
+                // 2. 인증 요청 (서버가 "이름 대세요" 함)
+                case SUBMITNAME: {
+                    if (negotiating && !skippedSubmit) {
+                        skippedSubmit = true; // 협상 결과를 기다린다.
+                        break;
+                    }
+                    negotiating = false;
+                    if (resumeToken != null) {
+                        // 끊기기 전에 로그인해 있었다. 비밀번호를 다시 묻지 않고 토큰으로 다시 들어간다.
+                        // 토큰이 만료되었거나 서버가 모르면 SUBMITNAME이 다시 오므로, 그때는 평소처럼 로그인 창을 띄운다.
+                        send("RESUME " + resumeToken);
+                        resumeToken = null;
+                        break;
+                    }
+                    OutputStream connection = out;
+                    dialogs.execute(() -> {
+                        String cmd = getAuthenticationCommand(); // 팝업창 띄워서 입력받음
+                        // 창이 떠 있는 사이에 다시 연결했으면 버린다. (새 연결이 새로 묻는다)
+                        if (cmd != null && !cmd.isEmpty() && out == connection) send(cmd); // 서버로 전송
+                    });
+                    break;
+                }
+                // 3. 로그인 성공
+                case LOGIN_SUCCESS: {
+                    // "LOGIN_SUCCESS 아이디 [재접속토큰]" 에서 아이디와 토큰을 잘라냄 (토큰은 주는 서버만 준다)
+                    String[] parts = args.split(" ", 2);
+                    myName = parts[0];
+                    resumeToken = parts.length > 1 ? parts[1] : null;
+                    loggedIn = true;
+                    frame.setTitle("Chatter - 접속자: " + myName);
+                    textField.setEditable(true);
+                    messages.append("=== 로그인 성공! 우측 목록에서 대상을 선택하여 귓속말을 할 수 있습니다. ===");
+                    break;
+                }
+
+                // 4. 기타 메시지 처리 (시스템 메시지, 채팅 등)
+                case LOGIN_FAIL:
+                    dialogs.execute(() -> JOptionPane.showMessageDialog(frame, "로그인 실패: " + args));
+                    break;
+                case REGISTER_SUCCESS:
+                    dialogs.execute(() -> JOptionPane.showMessageDialog(frame, "회원가입 성공! 로그인해주세요."));
+                    break;
+                case REGISTER_FAIL:
+                    dialogs.execute(() -> JOptionPane.showMessageDialog(frame, "회원가입 실패: " + args));
+                    break;
+                case MESSAGE:
+                    // 실제 채팅 메시지가 오면 화면에 보여준다. (다음 프레임에 다른 메시지들과 한 번에 그려진다)
+                    messages.append(args);
+                    break;
+                default:
+                    break; // NAMEACCEPTED 등 화면과 상관없는 명령
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Nimbus Look and Feel 적용
+        // 자바 기본 GUI는 좀 투박해서, 좀 더 세련된 'Nimbus' 스타일을 입힌다.
+        // (이 부분-> 디자인 개선의 일환으로 AI가 제안함)
+        try {
+            for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
+                if ("Nimbus".equals(info.getName())) {
+                    UIManager.setLookAndFeel(info.getClassName());
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            // Nimbus가 없으면 그냥 기본 스타일로 간다.
+        }
+
+        // 설정 파일(server_info2.dat) 로드 로직
+        // 매번 코드를 수정하지 않고도 접속할 서버 IP를 파일로 관리하기 위함이다.
+        // 서버를 여러 개 적어 두면 연결 시간을 한 번씩 재서 가장 빠른 서버부터 쓴다.
+        List<Endpoint> endpoints = loadEndpoints(new File("server_info2.dat"));
+        rankByLatency(endpoints);
+
+        // 클라이언트 객체 생성 및 화면 표시
+        ChatClient client = new ChatClient(endpoints);
+        client.frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // X 버튼 누르면 프로그램 종료
+        client.frame.setVisible(true); // 창 띄우기
+        client.run(); // 통신 시작!
+    }
+
+    // --- [접속할 서버 목록] ---
+    // server_info2.dat 형식
+    //    - 예전 형식 : 첫 줄 IP, 둘째 줄 포트 (그대로 읽힌다)
+    //    - 여러 서버 : 한 줄에 "host:port" 하나씩. 빈 줄과 #으로 시작하는 줄은 건너뛴다.
+    // 파일이 없거나 비어 있으면 127.0.0.1:59001 (내 컴퓨터)
+    static List<Endpoint> loadEndpoints(File file) {
+        List<Endpoint> endpoints = new ArrayList<>();
+        if (file.exists() && !file.isDirectory()) {
+            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+                List<String> lines = new ArrayList<>();
+                String line;
+                while ((line = br.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) lines.add(line);
+                }
+                for (int i = 0; i < lines.size(); i++) {
+                    String entry = lines.get(i);
+                    int colon = entry.lastIndexOf(':');
+                    if (colon > 0) {
+                        endpoints.add(new Endpoint(entry.substring(0, colon), Integer.parseInt(entry.substring(colon + 1))));
+                    } else if (i + 1 < lines.size() && lines.get(i + 1).matches("\\d+")) {
+                        endpoints.add(new Endpoint(entry, Integer.parseInt(lines.get(++i)))); // 예전 형식
+                    } else {
+                        endpoints.add(new Endpoint(entry, DEFAULT_PORT));
+                    }
+                }
+            } catch (Exception e) {}
+        }
+        if (endpoints.isEmpty()) endpoints.add(new Endpoint("127.0.0.1", DEFAULT_PORT));
+        return endpoints;
+    }
+
+    // 서버마다 TCP 연결 시간을 한 번씩 (동시에) 재고 빠른 순서로 정렬한다.
+    // 연결이 안 되는 서버는 파일에 적힌 순서대로 맨 뒤로 간다. (나중에 살아나면 그때 쓴다)
+    static void rankByLatency(List<Endpoint> endpoints) {
+        if (endpoints.size() < 2) return;
+        endpoints.parallelStream().forEach(Endpoint::measure);
+        endpoints.sort(Comparator.comparingLong(endpoint -> endpoint.rttNanos));
+    }
+
+    static final class Endpoint {
+        final String host;
+        final int port;
+        volatile long rttNanos = Long.MAX_VALUE; // 시작할 때 잰 연결 시간 (연결이 안 되면 MAX)
+
+        Endpoint(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        void measure() {
+            long start = System.nanoTime();
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+                rttNanos = System.nanoTime() - start;
+            } catch (IOException e) {
+                rttNanos = Long.MAX_VALUE;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+}
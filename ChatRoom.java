@@ -0,0 +1,96 @@
+package Chatroom;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// --- [채팅방] ---
+// 예전에는 방이 하나뿐이라 broadcast가 접속자 전원에게 나갔다.
+// 이제 방마다 자기 멤버 목록과 자기 입장/퇴장 알림 묶음(PresenceBatcher)을 따로 가진다.
+// 방송은 이 방의 멤버들만 순회하므로 비용이 "전체 접속자 수"가 아니라 "방 인원 수"에 비례하고,
+// 멤버 목록도 방마다 따로 동기화되므로 한 방이 아무리 바빠도 다른 방과 서로 막지 않는다.
+// 채팅 메시지는 최근 N개(-Dchat.history.size, 기본 50)를 링 버퍼에 남겨서 새로 들어온 사람에게 보여준다.
+// (방이 없어지면 메모리의 기록도 같이 없어진다. 디스크의 MessageLog에는 남는다)
+class ChatRoom {
+    static final int HISTORY_SIZE = Integer.getInteger("chat.history.size", 50);
+
+    final String name;
+    private final Set<ClientSession> members = ConcurrentHashMap.newKeySet();
+    final PresenceBatcher presence;
+    final HistoryRing history = new HistoryRing(HISTORY_SIZE);
+
+    ChatRoom(String name, long presenceWindowMs) {
+        this.name = name;
+        this.presence = new PresenceBatcher(presenceWindowMs, this::broadcast);
+    }
+
+    // 멤버 추가/삭제는 RoomRegistry가 방 생성/삭제와 함께 원자적으로 처리한다.
+    void add(ClientSession session) {
+        members.add(session);
+    }
+
+    void remove(ClientSession session) {
+        members.remove(session);
+    }
+
+    boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    int size() {
+        return members.size();
+    }
+
+    // 채팅 메시지 방송 : 최근 대화 링과 디스크 기록(대기열에 넣기만 한다)에도 남긴다.
+    void publish(String message) {
+        Frame frame = Frame.of(message);
+        record(frame);
+        broadcastLocal(frame);
+        if (ChatServer.cluster != null) ChatServer.cluster.relayRoom(name, message, true);
+    }
+
+    // 방 전체 방송 : 이 노드의 멤버들에게 나눠 주고, 클러스터로 묶여 있으면 다른 노드에도 보낸다.
+    void broadcast(String message) {
+        broadcast(Frame.of(message));
+    }
+
+    void broadcast(Frame frame) {
+        broadcastLocal(frame);
+        if (ChatServer.cluster != null) ChatServer.cluster.relayRoom(name, frame.text(), false);
+    }
+
+    // 이 노드의 멤버들에게만 : Frame 하나를 멤버들의 대기열에 나눠 넣는다. (복사 없이 순회)
+    // 모든 멤버에게 넣는 데 걸린 시간을 통계(ServerMetrics.fanout)에 남긴다.
+    void broadcastLocal(Frame frame) {
+        long start = System.nanoTime();
+        for (ClientSession session : members) {
+            if (session.isJoined()) session.send(frame);
+        }
+        ServerMetrics.fanout.recordNanos(System.nanoTime() - start);
+    }
+
+    // 다른 노드에서 이 방으로 온 방송 (다시 다른 노드로 보내지 않는다)
+    void receiveRemote(String text, boolean chat) {
+        Frame frame = Frame.of(text);
+        if (chat) record(frame);
+        broadcastLocal(frame);
+    }
+
+    private void record(Frame frame) {
+        history.add(frame);
+        if (ChatServer.messages != null) ChatServer.messages.append(name, frame.text());
+    }
+
+    // 이 방의 전체 접속자 명단 (/userlist id1,id2,...). 다른 노드에서 들어와 있는 사람도 포함한다.
+    String userListLine() {
+        StringBuilder sb = new StringBuilder("/userlist ");
+        for (ClientSession session : members) {
+            if (session.isJoined()) sb.append(session.getName()).append(",");
+        }
+        if (ChatServer.cluster != null) {
+            for (String userID : ChatServer.cluster.remoteMembers(name)) {
+                sb.append(userID).append(",");
+            }
+        }
+        return sb.toString();
+    }
+}
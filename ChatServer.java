@@ -3,42 +3,140 @@ package Chatroom;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.security.MessageDigest; // 암호화를 위한 도구라고 보면 된다.
-import java.security.SecureRandom; // 보안성이 강한 랜덤 숫자를 생성하기 위해 import한다.
-import java.util.HashMap;// 데이터를 Key-Value(ID-Info) 쌍으로 저장하는 자료구조 HashMap import.
-import java.util.Map;
-import java.util.Scanner;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
 
 public class ChatServer {
 
-    // 접속한 클라이언트 관리 (ID -> PrintWriter)
-    // HashMap으로 "ID'를 주면 그 사람의 PrintWriter를 준다.
-    // 모든 클라이언트 핸들러들이 이 하나의 장부를 공유해야 하기 때문에 static으로 설정한다.
-    private static Map<String, PrintWriter> activeClients = new HashMap<>();
+    // 접속한 클라이언트 관리 (ID -> ClientSession)
+    // 모든 클라이언트 핸들러들이 이 하나의 명부를 공유해야 하기 때문에 static으로 설정한다.
+    // 전역 락 없이 동시에 조회/입장/퇴장/방송을 할 수 있도록 SessionRegistry(ConcurrentHashMap)를 쓴다.
+    static final SessionRegistry sessions = new SessionRegistry();
 
-    // 파일 및 데이터 동기화 락
-    // 여러 스레드가 동시에 파일에 접근하거나 쓰면 파일이 깨질 수도 있다.
-    // 그래서 이 fileLock을 가진 사람만 파일 작업을 하도록 제한하기 위해 만든 객체이다.
-    private static final Object fileLock = new Object();
     // 회원정보를 저장하기 위한 파일 이름을 설정한다.
     private static final String USER_FILE = "users.dat";
+    // 회원 정보 저장소 : 서버 시작 시 USER_FILE을 한 번 읽어서 메모리에 색인해 둔다.
+    static UserStore users;
+    // 접속하지 않은 회원에게 온 귓속말 보관함 (다음 로그인 때 전달)
+    private static final String MAILBOX_FILE = "mailbox.dat";
+    static Mailbox mailbox;
+    // 회원가입/로그인(비밀번호 해시)을 처리하는 전용 작업자 풀
+    static AuthService auth;
+    // 재접속 토큰 : LOGIN_SUCCESS와 함께 주고, RESUME으로 돌아오면 비밀번호 대신 확인한다.
+    static ResumeTokens tokens;
+    // 채팅방 목록 (방마다 멤버와 입장/퇴장 알림 묶음을 따로 가진다)
+    static RoomRegistry rooms;
+    // 방송된 채팅 메시지를 디스크에 덧붙이는 대화 기록 (전용 스레드가 쓴다)
+    static MessageLog messages;
+    // 대화 기록의 검색 색인 (/search). 기록 스레드가 쓰면서 같이 채운다.
+    static SearchIndex search;
+    // 블로킹 엔진에서 접속자별 송신 대기열을 소켓에 써 주는 writer 스레드들
+    private static ExecutorService writerPool;
+    // 한동안 아무것도 보내지 않는 연결에 PING을 보내고, 끝까지 답이 없으면 끊는다.
+    static IdleReaper reaper;
+    // SIGTERM을 받았을 때의 정리 순서와, 지난번 종료 때 남긴 접속자 상태 (sessions.dat)
+    private static final String SESSION_FILE = "sessions.dat";
+    static GracefulShutdown shutdown;
+    // 여러 노드를 묶었을 때의 노드 간 연결 (묶지 않으면 혼자 도는 Cluster)
+    static Cluster cluster;
+    // 서버가 사용하는 포트 번호 (한 컴퓨터에 노드를 여러 개 띄울 때는 -Dchat.port로 바꾼다)
+    static final int PORT = Integer.getInteger("chat.port", 59001);
 
     // Main 메소드
-    // 1. 스레드 풀 생성 : 접속자가 몰려도 서버가 다운되지 않도록 500개의 스레드로 제한을 둔다.
-    // 2. 서버 소켓 생성 : 59001 포트를 점유하고 클라이언트의 연결을 기다린다.
-    // 3. 무한 루프 : listener.accpet()로 대기하다가 연결이 들어오면
+    // 1. 실행 모드 선택 : 첫 번째 인자로 서버 엔진을 고른다. (기본값 : blocking)
+    //    - blocking : 접속자 1명당 스레드 1개 (Handler + 500개 스레드 풀)
+    //    - nio      : Selector 이벤트 루프 몇 개가 모든 접속자를 나눠서 처리 (NioChatServer)
+    //    - virtual  : Handler는 그대로, 접속자 1명당 가상 스레드 1개 (동시 접속 수 제한 없음)
+    // 2. 스레드 풀 생성 : 접속자가 몰려도 서버가 다운되지 않도록 500개의 스레드로 제한을 둔다.
+    // 3. 서버 소켓 생성 : 59001 포트를 점유하고 클라이언트의 연결을 기다린다.
+    // 4. 무한 루프 : listener.accpet()로 대기하다가 연결이 들어오면
     //              해당 소켓을 처리할 "Handler" 객체를 만들어서 스레프 풀에 던진다. (비동기처리)
     // # 비동기 처리란?
 
     public static void main(String[] args) throws Exception {
-        System.out.println(">>> 채팅 서버가 실행 중입니다 (Port: 59001) <<<");
-        ExecutorService pool = Executors.newFixedThreadPool(500);
+        String engine = args.length > 0 ? args[0] : "blocking";
+        users = UserStore.open(USER_FILE);
+        System.out.println(">>> 회원 " + users.size() + "명을 불러왔습니다 (" + USER_FILE + ") <<<");
+        mailbox = Mailbox.open(MAILBOX_FILE);
+        System.out.println(">>> 보관 중인 오프라인 귓속말 " + mailbox.size() + "개 (" + MAILBOX_FILE + ") <<<");
+        auth = AuthService.fromSystemProperties();
+        auth.startReporting(Long.getLong("chat.auth.reportSeconds", 60));
+        tokens = ResumeTokens.fromSystemProperties();
+        shutdown = GracefulShutdown.open(SESSION_FILE, tokens.ttlMillis());
+        if (shutdown.restoredCount() > 0) {
+            System.out.println(">>> 재시작 전 접속자 " + shutdown.restoredCount() + "명의 방을 기억해 둡니다 (" + SESSION_FILE + ") <<<");
+        }
+        rooms = new RoomRegistry(Long.getLong("chat.presence.windowMs", 100));
+        messages = MessageLog.fromSystemProperties();
+        search = SearchIndex.open(new File(messages.dir(), "index"));
+        int caughtUp = messages.indexTo(search);
+        System.out.println(">>> 검색 색인 : 메시지 " + search.size() + "개" + (caughtUp > 0 ? " (기록에서 " + caughtUp + "개를 새로 색인)" : "") + " <<<");
+        // 기본 방의 최근 대화는 시작할 때 디스크에서 한 번만 읽어서 링 버퍼를 채워 둔다.
+        ChatRoom lobby = rooms.get(RoomRegistry.LOBBY);
+        for (String line : messages.recent(RoomRegistry.LOBBY, ChatRoom.HISTORY_SIZE)) {
+            lobby.history.add(Frame.of(line));
+        }
+        cluster = Cluster.fromSystemProperties();
+        cluster.start();
+        if (cluster.isEnabled()) {
+            System.out.println(">>> 클러스터 노드 '" + cluster.localNode() + "' (노드 간 주소 "
+                    + System.getProperty("chat.cluster.bind", "127.0.0.1") + ":" + Integer.getInteger("chat.cluster.port", 60001) + ") <<<");
+        }
+        reaper = IdleReaper.fromSystemProperties();
+        reaper.start();
+        ServerMetrics.start();
+        // -Dchat.tls.keystore를 주면 채팅 포트를 TLS로 연다. (TlsSupport)
+        SSLContext tls = TlsSupport.serverContext();
+        if (tls != null) System.out.println(">>> TLS 사용 (" + System.getProperty("chat.tls.keystore") + ") <<<");
+        // kill(SIGTERM), Ctrl+C 등으로 끌 때 : 접속을 그만 받고, 접속자들에게 재시작을 알리고,
+        // 송신 대기열과 대화 기록을 마저 쓴 뒤에 끝낸다. (GracefulShutdown)
+        Runtime.getRuntime().addShutdownHook(new Thread(shutdown::run, "graceful-shutdown"));
+        if (engine.equalsIgnoreCase("nio")) {
+            int loops = Integer.getInteger("chat.nio.threads", Runtime.getRuntime().availableProcessors());
+            System.out.println(">>> 채팅 서버가 실행 중입니다 (Port: " + PORT + ", NIO 이벤트 루프 " + loops + "개) <<<");
+            new NioChatServer(PORT, loops, tls).run();
+            return;
+        }
+
+        ExecutorService pool;
+        if (engine.equalsIgnoreCase("virtual")) {
+            // 가상 스레드는 블로킹(nextLine 등)될 때 캐리어 스레드를 놓아주므로 풀 크기 제한이 필요 없다.
+            System.out.println(">>> 채팅 서버가 실행 중입니다 (Port: " + PORT + ", 가상 스레드 모드) <<<");
+            pool = Executors.newVirtualThreadPerTaskExecutor();
+            writerPool = pool;
+            PinningMonitor.start();
+        } else {
+            System.out.println(">>> 채팅 서버가 실행 중입니다 (Port: " + PORT + ") <<<");
+            pool = Executors.newFixedThreadPool(500);
+            writerPool = Executors.newCachedThreadPool();
+            ThreadPoolExecutor handlers = (ThreadPoolExecutor) pool;
+            ServerMetrics.gauge("chat_handler_pool_active", "일하고 있는 Handler 스레드 수", handlers::getActiveCount);
+            ServerMetrics.gauge("chat_handler_pool_queue", "스레드를 기다리는 접속 수", () -> handlers.getQueue().size());
+        }
 
-        try (ServerSocket listener = new ServerSocket(59001)) {
+        try (ServerSocket listener = tls != null ? newTlsListener(tls) : new ServerSocket(PORT)) {
+            shutdown.setListener(listener);
             while (true) {
-                pool.execute(new Handler(listener.accept()));
+                Socket socket;
+                try {
+                    socket = listener.accept();
+                } catch (SocketException e) {
+                    if (shutdown.isStopping()) return; // 정상 종료 중이라 listener를 닫았다.
+                    throw e;
+                }
+                // TLS 핸드셰이크는 작은 레코드를 여러 번 주고받으므로, Nagle에 걸리면 왕복마다 수십 ms씩 늦어진다.
+                // (writer는 묶음마다 한 번 flush하므로 꺼도 작은 패킷이 늘지 않는다)
+                if (tls != null) socket.setTcpNoDelay(true);
+                pool.execute(new Handler(socket));
                 // listener.accpet() : 여기서 프로그램이 잠깐 멈춘다. Blocking...
                 // 누군가 접속할 때까지 기다리다가 접속하면 Socket 객체를 하나 만들어서 반환한다.
 
@@ -48,263 +146,114 @@ public class ChatServer {
         }
     }
 
-    // --- [접속자 명단 브로드캐스트] (New!) ---
-    // 현재 접속 중인 모든 사용자의 ID를 콤마(,)로 구분해서 클라이언트들에게 전송한다.
-    // 목적 : Client GUI를 실시간으로 갱신하기 위해서이다.
-    // activeClients 맵을 순회하는 동안 다른 스레드가 수정하지 못하도록 'synchronized'를 건다.
-    private static void broadcastUserList() {
-        StringBuilder sb = new StringBuilder("/userlist ");
-        synchronized (activeClients) {
-            // 맵에 저장된 모든 Key(사용자 ID)를 콤마(,)로 이어 붙인다.
-            for (String user : activeClients.keySet()) {
-                sb.append(user).append(",");
-            }
-            // 모든 클라이언트에게 전송
-            // 완성된 명단 문자열을 접속 중인 모든 사용자에게 쏘아준다.
-            for (PrintWriter writer : activeClients.values()) {
-                writer.println(sb.toString());
-            }
-        }
+    // TLS 서버 소켓. 핸드셰이크는 accept 때가 아니라 Handler/writer가 처음 읽고 쓸 때 그 스레드에서 일어난다.
+    private static ServerSocket newTlsListener(SSLContext tls) throws IOException {
+        SSLServerSocket listener = (SSLServerSocket) tls.getServerSocketFactory().createServerSocket(PORT);
+        listener.setEnabledProtocols(TlsSupport.protocols());
+        return listener;
     }
 
-    // --- [회원가입 및 인증 로직] (기존 유지) ---
-    // 사용자로부터 받은 정보 (ID, 비번, 이름, 이메일)를 파일에 저장합니다.
-    // 1. 동기화 : 여러 명이 동시에 가입할 때 파일이 깨지지 않도록 'fileLock'을 건다.
-    // 2. 중복 검사 : 파일을 읽어 이미 존재하는 ID인지 확인한다.
-    // 3. 보안 저장 : 비밀번호는 그냥 저장하지 않고 Salt를 섞어 해시한 뒤 저장한다.
-    private static boolean registerUser(String userID, String password, String name, String email) {
-        synchronized (fileLock) {
-            // 파일을 읽어서 중복 ID를 체크한다.
-            try (BufferedReader br = new BufferedReader(new FileReader(USER_FILE))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] parts = line.split(",", 5);
-                    if (parts.length > 0 && parts[0].equals(userID)) {
-                        return false; // ID 중복
-                    }
-                }
-            } catch (FileNotFoundException e) {
-                // 파일 없으면 새로 만들면 되므로 무시한다.
-            } catch (IOException e) {
-                e.printStackTrace();
-                return false;
-            }
-
-            // 중복이 없으면 파일 끝에 새 정보를 추가한다.
-            try (PrintWriter writer = new PrintWriter(new FileWriter(USER_FILE, true))) {
-                String salt = getSalt();
-                String hashedPassword = getHashedPassword(password, salt); // 암호화 (Hashing)
-                // CSV형태로 콤마로 묶어서 한 줄로 기록한다.
-                String newUserLine = String.join(",", userID, hashedPassword, salt, name, email);
-                writer.println(newUserLine);
-                return true;
-            } catch (Exception e) {
-                e.printStackTrace();
-                return false;
-            }
-        }
+    // --- [전체 방송] ---
+    // 방과 상관없이 서버에 접속한 모든 사람에게 보낸다. (일반 채팅은 ChatRoom.broadcast로 방 안에만 보낸다)
+    // 접속자마다 대기열에 넣기만 하므로 느린 접속자가 있어도 보내는 쪽은 기다리지 않는다.
+    // 메시지는 Frame으로 딱 한 번만 인코딩하고, 모든 접속자가 같은 바이트를 공유한다.
+    // 명부를 복사하지 않고 그대로 순회한다. (입장 처리가 끝난 세션에게만 보낸다)
+    static void broadcast(String message) {
+        broadcast(Frame.of(message));
     }
 
-    // 로그인 인증 로직
-    // 사용자가 입력한 ID와 비밀번호가 맞는지 확인한다.
-    // 1. 파일 탐색 : 해당 ID를 가진 줄을 찾는다.
-    // 2. 해시 검증 : 파일에 저장된 Salt를 꺼내서 사용자가 입력한 비밀번호와 섞어 다시 해시를 만든다.
-    // 3. 비교 : 방금 만든 해시값과 파일에 저장된 해시값이 같으면 통과(True)이다.
-    private static boolean authenticateUser(String userID, String password) {
-        synchronized (fileLock) {
-            try (BufferedReader br = new BufferedReader(new FileReader(USER_FILE))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] parts = line.split(",", 5);
-                    // ID가 일치하는 라인 발견했을 때
-                    if (parts.length >= 3 && parts[0].equals(userID)) {
-                        String storedHash = parts[1]; // 저장된 암호문
-                        String storedSalt = parts[2]; // 저장된 Salt
-                        // 입력된 비밀번호를 똑같은 방식으로 암호화해보고 일치하는지 확인한다.
-                        if (getHashedPassword(password, storedSalt).equals(storedHash)) {
-                            return true;
-                        } else {
-                            return false;
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    static void broadcast(Frame frame) {
+        for (ClientSession session : sessions.all()) {
+            if (session.isJoined()) session.send(frame);
         }
-        return false; // ID가 없거나 에러 발생 시에 실패한다.
-    }
-
-
-    // Slat 생성 로직
-    // 비밀번호 보안을 강화하기 위히 랜덤한 바이트 배열 (Salt)를 생성한다.
-    // 같은 비밀번호라도 Salt가 다르면 저장되는 해시값이 달라져서 해킹이 어려워진다.
-    private static String getSalt() throws Exception {
-        SecureRandom sr = SecureRandom.getInstance("SHA1PRNG");
-        byte[] salt = new byte[16];
-        sr.nextBytes(salt);
-        return bytesToHex(salt);
-    }
-
-    // 비밀번호 해시화
-    // SHA-256 알고리즘을 사용하여 (비밀번호 + Salt)를 복호화 불가능한 문자열로 변환한다.
-    private static String getHashedPassword(String password, String salt) throws Exception {
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
-        md.update(salt.getBytes());
-        byte[] hashedPassword = md.digest(password.getBytes());
-        return bytesToHex(hashedPassword);
-    }
-
-    private static String bytesToHex(byte[] hash) {
-        StringBuilder hexString = new StringBuilder(2 * hash.length);
-        for (byte b : hash) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) hexString.append('0');
-            hexString.append(hex);
-        }
-        return hexString.toString();
     }
 
     // --- [핸들러 클래스] ---
+    // 블로킹 엔진 : 스레드 1개가 Client 1명의 소켓을 붙잡고 명령을 하나씩 읽는다.
+    // (텍스트 줄이든 협상된 바이너리 프레임이든 WireCodec.Decoder가 풀어 준다. 예전에는 Scanner.nextLine()이었다)
+    // 읽은 줄의 실제 처리(인증, 입장, 메시지)는 NIO 엔진과 공유하는 ClientSession이 맡는다.
+    // 보내는 쪽은 따로 writer 스레드가 송신 대기열(OutboundQueue)을 비우면서 소켓에 쓴다.
+    // virtual 모드에서는 이 Handler가 가상 스레드 위에서 돈다. JDK 21의 BufferedOutputStream/소켓 스트림은
+    // 내부적으로 synchronized 대신 j.u.c 락을 쓰므로 read()/write()에서 캐리어가 고정되지 않는다.
     private static class Handler implements Runnable {
-        private String name;
         private Socket socket;
-        private Scanner in;
-        private PrintWriter out;
+        private InputStream in;
+        private final WireCodec.Decoder decoder = new WireCodec.Decoder(true);
+        private OutputStream out;
 
         public Handler(Socket socket) {
             this.socket = socket;
         }
 
-        // 귓속말 명령어가 처리되는 핵심 부분
-        // Client 1명과 1:1로 통신하는 스레드의 메인 로직이다.
-        // 크게 3단계로 나뉜다 : (1)인증 -> (2)입장 -> (3)메세지 루프
         public void run() {
+            ClientSession session = null;
+            OutboundQueue queue = null;
+            Future<?> writer = null;
+            IdleReaper.Watch watch = null;
+            ServerMetrics.connections.increment();
             try {
-                in = new Scanner(socket.getInputStream());
-                out = new PrintWriter(socket.getOutputStream(), true);
+                in = socket.getInputStream();
+                out = new BufferedOutputStream(socket.getOutputStream());
+                // 대기열이 넘쳐서 끊어야 하면 소켓을 닫는다. -> read()가 깨어나면서 아래 finally로 간다.
+                queue = new OutboundQueue(null, this::closeSocket);
+                OutboundQueue q = queue;
+                writer = writerPool.submit(() -> writeLoop(q));
+                // 이 스레드는 어차피 블로킹으로 기다릴 수 있으므로, 인증 결과 처리는 인증 스레드에서 바로 하고
+                // 여기서는 awaitPending()으로 끝날 때까지 기다린 뒤 다음 줄을 읽는다.
+                session = new ClientSession(queue, Runnable::run);
+                // 네트워크가 조용히 사라진 접속자는 reaper가 소켓을 닫아서 아래 read()를 깨운다.
+                watch = ChatServer.reaper.watch(session, this::closeSocket);
 
-                // 1. 인증 단계
-                // 로그인이나 회원가입이 성공할 때까지 무한 반복한다.
+                session.start();
                 while (true) {
-                    out.println("SUBMITNAME"); // 클라이언트에게 "입력하세요"라고 요청한다.
-                    if (!in.hasNextLine()) return;
-                    String command = in.nextLine();
-
-                    if (command.startsWith("REGISTER ")) {
-                        // 회원가입 요청 처리이다.
-                        String[] parts = command.split(" ", 5);
-                        if (parts.length == 5) {
-                            if (registerUser(parts[1], parts[2], parts[3], parts[4])) {
-                                out.println("REGISTER_SUCCESS");
-                            } else {
-                                out.println("REGISTER_FAIL ID_EXISTS");
-                            }
-                        }
-                        // 로그인 요청 처리 로직이다
-                        // 이미 접속 중인 ID인지 메모리 (activeClients)에서 확인 후
-                        // authenticateUser로 파일 대조를 수행한다.
-                        // 성공 시 "LOGIN_SUCCESS" 전송 후 break로 루프를 탈출한다.
-                    } else if (command.startsWith("LOGIN ")) {
-                        String[] parts = command.split(" ", 3);
-                        if (parts.length == 3) {
-                            String tryID = parts[1];
-                            String tryPass = parts[2];
-
-                            synchronized (activeClients) {
-                                if (activeClients.containsKey(tryID)) {
-                                    out.println("LOGIN_FAIL ALREADY_LOGGED_IN");
-                                    continue;
-                                }
-                            }
-                            // authenticateUser로 파일 대조를 수행한다.
-                            // 성공 시 "LOGIN_SUCCESS" 전송 후 break로 루프를 탈출한다.
-                            if (authenticateUser(tryID, tryPass)) {
-                                this.name = tryID;
-                                out.println("LOGIN_SUCCESS " + this.name);
-                                break;
-                            } else {
-                                out.println("LOGIN_FAIL WRONG_ID_PW");
-                            }
-                        }
-                    }
-                }
-
-                // 2. 입장 처리
-                out.println("NAMEACCEPTED " + name);
-                synchronized (activeClients) {
-                    activeClients.put(name, out);
-                }
-
-                broadcast("MESSAGE [공지] " + name + " 님이 입장하셨습니다.");
-                broadcastUserList(); // <--- 중요! 접속자 명단 갱신 전송
-
-                // 3. 메시지 처리 루프
-                // 여기서부터는 클라이언트가 보내는 말을 계속 받아서 처리한다.
-                while (true) {
-                    if (!in.hasNextLine()) break; // 연결 끊기면 종료
-                    String input = in.nextLine();
-
-                    if (input.toLowerCase().startsWith("/quit")) {
-                        break; // 종료 명령
-                    }
-
-                    // 귓속말 처리 (/whisper 대상 메시지)
-                    if (input.startsWith("/whisper ")) {
-                        String[] parts = input.split(" ", 3);
-                        if (parts.length == 3) {
-                            String targetID = parts[1];
-                            String msg = parts[2];
-                            sendWhisper(targetID, msg); // 귓속말 함수 호출
-                        } else {
-                            out.println("MESSAGE [시스템] 귓속말 형식이 잘못되었습니다.");
-                        }
-                        continue; // 귓속말은 전체 방송 안 하고 여기서 끝냄
-                    }
-
-                    // 일반 메시지 -> 모두에게 전송
-                    broadcast("MESSAGE " + name + ": " + input);
+                    if (!decoder.read(in)) break; // 연결 끊기면 종료
+                    watch.touch();
+                    if (!session.handle(decoder.op, decoder.args)) break; // /quit
+                    session.awaitPending();
                 }
             } catch (Exception e) {
                 System.out.println(e);
             } finally {
-                // --- 4. 퇴장 및 뒷정리 ---
                 // try 블록 안에서 무슨 일이 있어도 여기는 무조건 실행됨
-                if (name != null) {
-                    synchronized (activeClients) {
-                        activeClients.remove(name); // 명단에서 지우기
-                    }
-                    broadcast("MESSAGE [공지] " + name + " 님이 퇴장하셨습니다.");
-                    broadcastUserList(); // <--- 중요! 나갈 때도 명단 갱신
+                if (watch != null) watch.cancel();
+                if (session != null) session.close();
+                if (queue != null) queue.close();
+                // 남은 메시지를 writer가 마저 보낼 시간을 잠깐 준다.
+                if (writer != null) {
+                    try { writer.get(2, TimeUnit.SECONDS); } catch (Exception e) {}
                 }
-                try { socket.close(); } catch (IOException e) {} // 전화 끊음
+                closeSocket(); // 전화 끊음
+                ServerMetrics.connections.decrement();
             }
         }
 
-        // 전체 방송 핼퍼
-        private void broadcast(String message) {
-            synchronized (activeClients) {
-                // 접속자 맵의 값(PrintWriter)들만 모아서 하나씩 메세지를 쓴다.
-                for (PrintWriter writer : activeClients.values()) {
-                    writer.println(message);
+        // 송신 대기열에 쌓인 메시지를 한꺼번에 꺼내서 쓰고, 묶음마다 한 번만 flush한다.
+        // Frame은 이미 인코딩된 바이트라서 여기서는 문자열 변환 없이 그대로 쓴다.
+        // Frame.PROTO_OK(_DEFLATE)를 쓴 다음부터는 바이너리(압축) 형식의 바이트를 쓴다.
+        private void writeLoop(OutboundQueue queue) {
+            List<Frame> batch = new ArrayList<>();
+            Frame.Wire wire = Frame.Wire.TEXT;
+            try {
+                while (queue.awaitAndDrainTo(batch)) {
+                    long written = 0;
+                    for (Frame frame : batch) {
+                        written += frame.writeTo(out, wire);
+                        wire = frame.next(wire);
+                    }
+                    out.flush();
+                    ServerMetrics.messagesOut.add(batch.size());
+                    ServerMetrics.bytesWritten.add(written);
+                    batch.clear();
                 }
+            } catch (IOException e) {
+                // 소켓이 끊겼다. 읽는 쪽(run)도 곧 끝난다.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
 
-        // 귓속말 핼퍼
-        private void sendWhisper(String targetID, String message) {
-            synchronized (activeClients) {
-                // 맵에서 targetID(받는 사람)의 PrintWriter를 찾아낸다.
-                PrintWriter targetWriter = activeClients.get(targetID);
-                if (targetWriter != null) {
-                    // 받는 사람에게 전송
-                    targetWriter.println("MESSAGE (귓속말 from " + name + "): " + message);
-                    // 보낸 사람에게도 전송 (그래야 내 화면에도 뜸)
-                    out.println("MESSAGE (귓속말 to " + targetID + "): " + message);
-                } else {
-                    out.println("MESSAGE [시스템] '" + targetID + "' 님은 현재 접속 중이 아닙니다.");
-                }
-            }
+        private void closeSocket() {
+            try { socket.close(); } catch (IOException e) {}
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,475 @@
+package Chatroom;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// --- [클라이언트 세션 (프로토콜 상태)] ---
+// Client 1명과의 대화 상태를 한 줄(line) 단위로 처리하는 클래스이다.
+// 블로킹 Handler(스레드 1개 = 접속자 1명)와 NIO 이벤트 루프(스레드 1개 = 접속자 여러 명)가
+// 똑같은 SUBMITNAME/LOGIN/REGISTER/MESSAGE 프로토콜을 쓰도록 로직을 여기 한 곳에 모았다.
+// 크게 3단계로 나뉜다 : (1)인증 -> (2)입장 -> (3)메세지 처리
+// 엔진은 받은 바이트를 WireCodec.Decoder로 (명령, 인자)로 풀어서 handle()에 넘긴다.
+// 텍스트로 왔든 바이너리로 왔든 여기서는 구별하지 않는다.
+// 입장한 세션은 ChatServer.sessions 명부에 통째로 등록되어 다른 세션이 귓속말/방송을 보낼 때 쓰인다.
+//
+// 회원가입/로그인(AuthService)과 대화 검색(SearchIndex)은 작업자 풀에서 비동기로 처리된다. 결과가 나올 때까지(pending)
+// 이 세션은 다음 줄을 처리하면 안 되므로, 엔진이 hasPending()/pending()을 보고 읽기를 잠시 멈춘다.
+// 결과 처리 코드는 context 실행기에서 돈다. (NIO : 담당 이벤트 루프, 블로킹 : 결과를 낸 스레드 그대로)
+class ClientSession {
+    private static final long TAKEOVER_MS = 2000; // 남아 있던 연결이 닫히기를 기다리는 최대 시간
+    private static final DateTimeFormatter SEARCH_TIME = DateTimeFormatter.ofPattern("MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    private final OutboundQueue out; // 이 접속자에게 보낼 메시지 대기열
+    private final Executor context;
+    private final RateLimiter limiter = new RateLimiter(); // 이 접속자의 전송 속도 제한 (handle을 부르는 스레드만 쓴다)
+    private CompletableFuture<Void> pending; // 진행 중인 인증 작업 (없으면 null)
+    private String name;
+    private volatile boolean joined; // NAMEACCEPTED까지 보낸 뒤에만 방송을 받는다.
+    private volatile ChatRoom room; // 지금 들어가 있는 방 (클러스터 스레드도 읽는다)
+    private boolean closed;
+    private volatile boolean answersPing; // 바이너리를 협상했거나 PONG을 보낸 적이 있다. (IdleReaper가 끊어도 되는 클라이언트)
+    private final CompletableFuture<Void> closedFuture = new CompletableFuture<>(); // close()를 마치면 완료된다.
+    private String returnRoom; // 토큰으로 밀어낸 예전 연결이 있던 방 (입장할 때 그 방으로 간다)
+
+    ClientSession(OutboundQueue out, Executor context) {
+        this.out = out;
+        this.context = context;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean isJoined() {
+        return joined;
+    }
+
+    // 지금 들어가 있는 방 이름 (없으면 null)
+    String roomName() {
+        ChatRoom r = room;
+        return r != null ? r.name : null;
+    }
+
+    // 다른 스레드(방송, 귓속말)에서도 호출된다. 대기열에 넣기만 한다.
+    void send(String line) {
+        out.send(line);
+    }
+
+    void send(Frame frame) {
+        out.send(frame);
+    }
+
+    // PING을 아는 클라이언트인지. 예전 텍스트 클라이언트는 PING에 답하지 않으므로 조용하다고 끊으면 안 된다.
+    // 바이너리를 협상한 클라이언트는 접속하자마자 PING을 아는 것으로 본다. PING(0x4C)을 모르는 바이너리 클라이언트는
+    // 어차피 "알 수 없는 opcode"로 연결을 끊으므로, 첫 PING 전에 네트워크가 죽어도 이 연결은 timeoutMs에 정리된다.
+    boolean answersPing() {
+        return answersPing;
+    }
+
+    // 아직 소켓에 쓰지 않은 메시지 수
+    int pendingOutbound() {
+        return out.size();
+    }
+
+    // 접속 직후 호출된다. 클라이언트에게 "입력하세요"라고 요청한다.
+    void start() {
+        out.send("SUBMITNAME");
+    }
+
+    boolean hasPending() {
+        return pending != null && !pending.isDone();
+    }
+
+    // 진행 중인 인증 작업. 끝나면(결과 처리까지 마치면) 완료된다.
+    CompletableFuture<Void> pending() {
+        return pending != null ? pending : CompletableFuture.completedFuture(null);
+    }
+
+    // 블로킹 엔진용 : 진행 중인 인증 작업이 끝날 때까지 기다린다.
+    void awaitPending() {
+        if (pending != null) pending.join();
+    }
+
+    // 텍스트 한 줄을 처리한다. (테스트/도구용 편의 함수)
+    boolean handleLine(String line) {
+        WireCodec.Op op = WireCodec.parse(line, true);
+        return handle(op, WireCodec.argsOf(op, line));
+    }
+
+    // 클라이언트가 보낸 명령 하나를 처리한다.
+    // false를 반환하면 연결을 끊어야 한다는 뜻이다. (/quit)
+    boolean handle(WireCodec.Op op, String args) {
+        ServerMetrics.messagesIn.increment();
+        // PING에 대한 답이다. 받았다는 것 자체(엔진이 이미 touch 했다)가 목적이므로 PING을 아는 클라이언트라고 적어 두기만 한다.
+        // 인자가 붙은 PONG 프레임은 답이 아니라 입력한 줄이므로 아래에서 다른 줄처럼 처리한다.
+        if (op == WireCodec.Op.PONG && args.isEmpty()) {
+            answersPing = true;
+            return true;
+        }
+        if (name == null) {
+            handleAuthCommand(op, args);
+            return true;
+        }
+        return handleChatMessage(op, args);
+    }
+
+    // 1. 인증 단계
+    // 로그인이나 회원가입이 성공할 때까지 매 줄마다 SUBMITNAME을 다시 보낸다.
+    private void handleAuthCommand(WireCodec.Op op, String args) {
+        if (op == WireCodec.Op.PROTO) {
+            // 바이너리 협상 (Decoder가 이미 받는 쪽을 바꿨다). 응답까지는 텍스트, 이후 SUBMITNAME부터 바이너리로 나간다.
+            // 압축도 원하고 서버가 허용하면(-Dchat.wire.deflate) 큰 메시지는 압축해서 보낸다.
+            boolean deflate = WireCodec.DEFLATE && args.endsWith(" DEFLATE");
+            answersPing = true;
+            out.send(deflate ? Frame.PROTO_OK_DEFLATE : Frame.PROTO_OK);
+        } else if (op == WireCodec.Op.REGISTER) {
+            // 회원가입 요청 처리이다. (REGISTER 아이디 비번 이름 이메일)
+            // 클러스터로 묶여 있으면 다른 노드들에게 먼저 이 ID를 선점해도 되는지 확인받는다.
+            String[] parts = args.split(" ", 4);
+            if (parts.length == 4) {
+                pending = ChatServer.cluster.claim("register:" + parts[0])
+                        .thenCompose(ok -> ok ? ChatServer.auth.register(parts[0], parts[1], parts[2], parts[3])
+                                : CompletableFuture.completedFuture(false))
+                        .handleAsync((ok, error) -> {
+                            if (isBusy(error)) {
+                                out.send("REGISTER_FAIL BUSY"); // 인증 서버가 바쁘다. 잠시 후 다시 시도
+                            } else if (error == null && ok) {
+                                out.send("REGISTER_SUCCESS");
+                            } else {
+                                out.send("REGISTER_FAIL ID_EXISTS");
+                            }
+                            out.send("SUBMITNAME");
+                            return null;
+                        }, context);
+                return;
+            }
+            // 재접속 요청이다. (RESUME 토큰)
+            // 서명과 만료 시각만 확인하면 되므로 인증 작업자 풀에 넘기지 않고 여기서 바로 처리한다. (수 마이크로초)
+            // 토큰은 한 번만 쓸 수 있고, 통과하면 LOGIN_SUCCESS와 함께 새 토큰을 받는다.
+            // 네트워크가 조용히 끊겼던 클라이언트는 예전 연결이 아직 명부에 남아 있을 수 있다. (IdleReaper가 정리하기 전)
+            // 토큰을 가진 쪽이 주인이므로 그 연결을 닫고, 닫히면 그 방으로 들어간다.
+            // 이후는 비밀번호로 로그인했을 때와 똑같다. (명부 등록 -> 클러스터 확인 -> LOGIN_SUCCESS)
+        } else if (op == WireCodec.Op.RESUME) {
+            String tryID = ChatServer.tokens.verify(args);
+            if (tryID == null) {
+                out.send("LOGIN_FAIL INVALID_TOKEN"); // 위조되었거나 만료되었거나 이미 쓴 토큰이다. 비밀번호로 다시 로그인해야 한다.
+            } else if (ChatServer.cluster.nodeOf(tryID) != null) {
+                out.send("LOGIN_FAIL ALREADY_LOGGED_IN");
+            } else if (!ChatServer.tokens.spend(args)) {
+                out.send("LOGIN_FAIL INVALID_TOKEN"); // 같은 토큰으로 동시에 들어왔다.
+            } else {
+                ChatServer.cluster.tokenSpent(args);
+                ClientSession stale = ChatServer.sessions.get(tryID);
+                if (stale == null) {
+                    pending = finishLogin(tryID, true, false);
+                } else {
+                    returnRoom = stale.roomName();
+                    pending = stale.disconnect("같은 아이디로 다시 접속해서 이 연결을 끊습니다.")
+                            .orTimeout(TAKEOVER_MS, TimeUnit.MILLISECONDS)
+                            .handleAsync((v, error) -> finishLogin(tryID, true, false), context)
+                            .thenCompose(next -> next);
+                }
+                return;
+            }
+            // 로그인 요청 처리 로직이다
+            // 이미 접속 중인 ID인지 명부(sessions)와 다른 노드의 접속자 명단에서 먼저 확인하고 (비싼 인증을 건너뛰기 위해)
+            // 인증 작업자 풀에 비밀번호 대조를 맡긴다.
+            // 인증이 끝나면 명부 등록을 putIfAbsent로 원자적으로 시도한다.
+            // 그 사이에 같은 ID가 먼저 들어왔다면 여기서 걸러진다.
+            // 클러스터로 묶여 있으면 다른 노드들에게도 확인받은 뒤(claim)에야 "LOGIN_SUCCESS" 전송 후 입장 처리로 넘어간다.
+        } else if (op == WireCodec.Op.LOGIN) {
+            String[] parts = args.split(" ", 2);
+            if (parts.length == 2) {
+                String tryID = parts[0];
+                String tryPass = parts[1];
+
+                if (ChatServer.sessions.contains(tryID) || ChatServer.cluster.nodeOf(tryID) != null) {
+                    out.send("LOGIN_FAIL ALREADY_LOGGED_IN");
+                } else {
+                    pending = ChatServer.auth.authenticate(tryID, tryPass)
+                            .handleAsync((ok, error) -> finishLogin(tryID, error == null && ok, isBusy(error)), context)
+                            .thenCompose(next -> next);
+                    return;
+                }
+            }
+        }
+        out.send("SUBMITNAME"); // 아직 인증 전이므로 다시 입력을 요청한다.
+    }
+
+    // 인증 결과가 나온 뒤 (context 실행기에서)
+    // 다른 노드의 확인을 기다려야 하면 그 작업을, 아니면 이미 끝난 future를 돌려준다.
+    private CompletableFuture<Void> finishLogin(String tryID, boolean authenticated, boolean busy) {
+        if (closed) return CompletableFuture.completedFuture(null); // 기다리는 사이에 연결이 끊겼다.
+        if (busy) {
+            out.send("LOGIN_FAIL BUSY");
+        } else if (!authenticated) {
+            out.send("LOGIN_FAIL WRONG_ID_PW");
+        } else if (!ChatServer.sessions.register(tryID, this)) {
+            out.send("LOGIN_FAIL ALREADY_LOGGED_IN");
+        } else {
+            // 이 노드에서는 자리를 잡았다. 다른 노드들에게도 확인받는다. (혼자 도는 서버면 바로 통과)
+            return ChatServer.cluster.claim("login:" + tryID)
+                    .thenAcceptAsync(ok -> completeLogin(tryID, ok), context);
+        }
+        out.send("SUBMITNAME");
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void completeLogin(String tryID, boolean claimed) {
+        if (closed || !claimed) {
+            ChatServer.sessions.unregister(tryID, this); // 잡아 둔 자리를 돌려놓는다.
+            if (closed) return;
+            out.send("LOGIN_FAIL ALREADY_LOGGED_IN"); // 다른 노드에 같은 ID가 있다.
+            out.send("SUBMITNAME");
+            return;
+        }
+        this.name = tryID;
+        out.send("LOGIN_SUCCESS " + this.name + " " + ChatServer.tokens.issue(this.name)); // 재접속 토큰도 같이 준다.
+        join();
+    }
+
+    private static boolean isBusy(Throwable error) {
+        if (error instanceof CompletionException) error = error.getCause();
+        return error instanceof RejectedExecutionException;
+    }
+
+    // 2. 입장 처리
+    private void join() {
+        out.send("NAMEACCEPTED " + name);
+        joined = true;
+        ChatServer.cluster.userOnline(name); // 다른 노드들의 명단에도 올린다.
+        // 로그인하면 먼저 기본 방(lobby)에 들어간다. 서버 재시작 직전에 있던 방이 있으면 그 방으로 돌아간다.
+        String previous = ChatServer.shutdown.takeRoom(name);
+        if (returnRoom != null) previous = returnRoom;
+        enterRoom(previous != null ? previous : RoomRegistry.LOBBY);
+        deliverMailbox(); // 접속하지 않은 동안 온 귓속말
+    }
+
+    // 오프라인 보관함에 쌓인 귓속말을 한꺼번에 전해 준다.
+    // 로그인 직후에 부르고, 보내는 쪽이 "아직 입장 전"으로 보고 보관함에 넣은 순간 입장이 끝난 경우에도 부른다.
+    void deliverMailbox() {
+        List<Mailbox.Letter> letters = ChatServer.mailbox.takeAll(name);
+        if (letters.isEmpty()) return;
+        out.send("MESSAGE [시스템] 접속하지 않은 동안 귓속말 " + letters.size() + "개가 도착했습니다.");
+        for (Mailbox.Letter letter : letters) {
+            out.send(letter.toMessage());
+        }
+    }
+
+    // 방에 들어간다.
+    // 1. 클라이언트에게 지금 방 이름(/room)과 그 방의 전체 접속자 명단(/userlist)을 딱 한 번 보낸다.
+    // 2. 그 방의 최근 대화를 메모리 링 버퍼에서 꺼내 보낸다. (디스크는 읽지 않는다)
+    //    여러 줄을 Frame 하나로 묶어서 보내므로, 압축을 협상한 접속자에게는 한 번에 압축되어 나간다.
+    // 3. 입장 공지와 명단 추가(/userjoin)는 그 방의 PresenceBatcher가 잠깐 모았다가 한꺼번에 보낸다.
+    private void enterRoom(String roomName) {
+        room = ChatServer.rooms.enter(roomName, this);
+        ChatServer.cluster.enterRoom(room.name, name);
+        out.send("/room " + room.name);
+        out.send(room.userListLine());
+        List<Frame> recent = room.history.snapshot();
+        if (!recent.isEmpty()) {
+            StringBuilder lines = new StringBuilder("MESSAGE [시스템] --- 최근 대화 " + recent.size() + "개 ---");
+            for (Frame frame : recent) {
+                lines.append('\n').append(frame.text());
+            }
+            out.send(lines.toString());
+        }
+        room.presence.joined(name); // <--- 중요! 다른 사람들 명단에 나를 추가
+    }
+
+    private void exitRoom() {
+        ChatServer.rooms.exit(room, this);
+        ChatServer.cluster.exitRoom(room.name, name);
+        room.presence.left(name); // <--- 중요! 나갈 때도 명단에서 나를 빼기 (퇴장 공지 포함)
+        room = null;
+    }
+
+    // 3. 메시지 처리
+    // 여기서부터는 클라이언트가 보내는 말을 계속 받아서 처리한다.
+    // 종료 말고는 모두 속도 제한을 먼저 통과해야 한다. (귓속말과 나머지는 따로 센다)
+    private boolean handleChatMessage(WireCodec.Op op, String args) {
+        if (op != WireCodec.Op.QUIT && !limiter.allow(op == WireCodec.Op.WHISPER, args)) {
+            return penalize();
+        }
+        switch (op) {
+            case QUIT:
+                return false; // 종료 명령
+
+            // 귓속말 처리 (/whisper 대상 메시지)
+            // 귓속말은 전체 방송 안 하고 여기서 끝냄
+            case WHISPER: {
+                String[] parts = args.split(" ", 2);
+                if (parts.length == 2) {
+                    sendWhisper(parts[0], parts[1]); // 귓속말 함수 호출
+                } else {
+                    out.send("MESSAGE [시스템] 귓속말 형식이 잘못되었습니다.");
+                }
+                return true;
+            }
+
+            // 방 이동 명령
+            //    /join 방이름  : 그 방으로 옮긴다. (없으면 새로 만든다)
+            //    /leave [방이름] : 지금 방에서 나와 기본 방(lobby)으로 돌아간다.
+            //    /rooms        : 지금 있는 방 목록과 인원을 보여준다.
+            case JOIN: {
+                String target = args.trim();
+                if (!RoomRegistry.isValidName(target)) {
+                    out.send("MESSAGE [시스템] 방 이름은 공백/제어 문자/콤마 없이 1~20자여야 합니다.");
+                } else if (!target.equals(room.name)) {
+                    exitRoom();
+                    enterRoom(target);
+                }
+                return true;
+            }
+            case LEAVE: {
+                String target = args.isEmpty() ? room.name : args.trim();
+                if (!target.equals(room.name)) {
+                    out.send("MESSAGE [시스템] 지금 있는 방은 '" + room.name + "' 입니다.");
+                } else if (!room.name.equals(RoomRegistry.LOBBY)) {
+                    exitRoom();
+                    enterRoom(RoomRegistry.LOBBY);
+                }
+                return true;
+            }
+            case ROOMS:
+                out.send("MESSAGE [시스템] 방 목록 : " + ChatServer.rooms.describe());
+                return true;
+
+            // 대화 검색 (/search 단어 ...) : 결과는 귓속말처럼 요청한 사람에게만 보낸다.
+            case SEARCH:
+                search(args);
+                return true;
+
+            // 일반 메시지 -> 같은 방 사람들에게 전송
+            // (LOGIN처럼 이 단계에서 뜻이 없는 명령은 예전처럼 입력한 줄 그대로 채팅으로 보낸다)
+            default:
+                room.publish("MESSAGE " + name + ": " + op.toText(args));
+                return true;
+        }
+    }
+
+    // 모든 단어가 들어 있는 최근 메시지들을 찾아서 한 묶음(Frame 하나)으로 보낸다.
+    // 찾는 동안에는 pending으로 다음 줄을 처리하지 않는다. (결과가 뒤에 보낸 명령보다 늦게 도착하지 않게)
+    private void search(String query) {
+        List<String> words = SearchIndex.words(query);
+        if (words.isEmpty()) {
+            out.send("MESSAGE [검색] 찾을 단어를 입력하세요. (/search 단어 ...)");
+            return;
+        }
+        String shown = String.join(" ", words);
+        long start = System.nanoTime();
+        pending = ChatServer.search.searchAsync(words, SearchIndex.MAX_RESULTS).handleAsync((hits, error) -> {
+            if (isBusy(error)) {
+                out.send("MESSAGE [검색] 검색 요청이 많습니다. 잠시 후 다시 시도하세요.");
+            } else if (error != null) {
+                out.send("MESSAGE [검색] 검색하지 못했습니다.");
+                System.out.println("[search] " + name + " '" + shown + "' 실패 : " + error);
+            } else if (hits.isEmpty()) {
+                out.send("MESSAGE [검색] '" + shown + "' : 찾은 메시지가 없습니다.");
+            } else {
+                double ms = (System.nanoTime() - start) / 1e6;
+                StringBuilder lines = new StringBuilder("MESSAGE [검색] '" + shown + "' : 최근 " + hits.size() + "개 ("
+                        + String.format("%.1f", ms) + "ms)");
+                for (SearchIndex.Hit hit : hits) {
+                    lines.append("\nMESSAGE [검색] ").append(SEARCH_TIME.format(Instant.ofEpochMilli(hit.time)))
+                            .append(" #").append(hit.room).append(' ').append(hit.text());
+                }
+                out.send(lines.toString());
+            }
+            return null;
+        }, context);
+    }
+
+    // 속도 제한에 걸린 메시지는 버리고 정책에 따라 알리거나 끊는다. false면 연결을 끊는다.
+    private boolean penalize() {
+        switch (RateLimiter.PENALTY) {
+            case DISCONNECT:
+                out.send("MESSAGE [시스템] 메시지를 너무 빨리 보내서 연결을 끊습니다.");
+                return false;
+            case WARN:
+                if (limiter.shouldWarn()) {
+                    out.send("MESSAGE [시스템] 메시지를 너무 빨리 보내고 있습니다. 일부 메시지는 전달되지 않았습니다.");
+                }
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    // --- 4. 퇴장 및 뒷정리 ---
+    // 연결이 끊기면 (정상 종료든 에러든) 반드시 한 번 호출된다.
+    // NIO 쪽에서는 여러 경로로 불릴 수 있으므로 두 번째 호출부터는 무시한다.
+    void close() {
+        if (closed) return;
+        closed = true;
+        if (name != null) {
+            joined = false;
+            ChatServer.sessions.unregister(name, this); // 명단에서 지우기
+            if (room != null) exitRoom();
+            ChatServer.cluster.userOffline(name);
+        }
+        long dropped = out.getDropped();
+        if (dropped > 0) {
+            System.out.println("[outbound] " + name + " : 대기열이 넘쳐서 메시지 " + dropped + "건을 보내지 못했습니다.");
+        }
+        closedFuture.complete(null);
+    }
+
+    // 서버 쪽에서 이 연결을 끊는다. 엔진이 연결을 닫고 close()까지 마치면 완료된다. (아무 스레드에서나)
+    CompletableFuture<Void> disconnect(String reason) {
+        out.send("MESSAGE [시스템] " + reason);
+        out.disconnect();
+        return closedFuture;
+    }
+
+    // 귓속말 핼퍼
+    private void sendWhisper(String targetID, String message) {
+        // 명부에서 targetID(받는 사람)의 세션을 찾아낸다.
+        ClientSession target = ChatServer.sessions.get(targetID);
+        String node;
+        if (target != null && target.isJoined()) {
+            // 받는 사람에게 전송
+            target.send("MESSAGE (귓속말 from " + name + "): " + message);
+            // 보낸 사람에게도 전송 (그래야 내 화면에도 뜸)
+            out.send("MESSAGE (귓속말 to " + targetID + "): " + message);
+        } else if ((node = ChatServer.cluster.nodeOf(targetID)) != null) {
+            // 다른 노드에 접속해 있다. 그 노드에게 전해 달라고 한다.
+            ChatServer.cluster.deliver(node, targetID, "MESSAGE (귓속말 from " + name + "): " + message);
+            out.send("MESSAGE (귓속말 to " + targetID + "): " + message);
+        } else if (ChatServer.users.contains(targetID)) {
+            // 가입된 회원이면 보관함에 넣어 두었다가 다음 로그인 때 전해 준다.
+            switch (ChatServer.mailbox.put(targetID, name, message)) {
+                case STORED:
+                    out.send("MESSAGE (귓속말 to " + targetID + ", 보관됨): " + message);
+                    // 넣는 사이에 받는 사람의 입장이 끝났을 수 있다. 그러면 지금 바로 전해 준다.
+                    ClientSession late = ChatServer.sessions.get(targetID);
+                    if (late != null && late.isJoined()) late.deliverMailbox();
+                    String lateNode = ChatServer.cluster.nodeOf(targetID);
+                    if (lateNode != null) {
+                        for (Mailbox.Letter letter : ChatServer.mailbox.takeAll(targetID)) {
+                            ChatServer.cluster.deliver(lateNode, targetID, letter.toMessage());
+                        }
+                    }
+                    break;
+                case RECIPIENT_FULL:
+                    out.send("MESSAGE [시스템] '" + targetID + "' 님의 귓속말 보관함이 가득 찼습니다.");
+                    break;
+                case SENDER_QUOTA:
+                    out.send("MESSAGE [시스템] 아직 읽히지 않은 귓속말이 너무 많아 더 보관할 수 없습니다.");
+                    break;
+                default:
+                    out.send("MESSAGE [시스템] 귓속말을 보관하지 못했습니다.");
+                    break;
+            }
+        } else {
+            out.send("MESSAGE [시스템] '" + targetID + "' 님은 현재 접속 중이 아닙니다.");
+        }
+    }
+}
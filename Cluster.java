@@ -0,0 +1,305 @@
+package Chatroom;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// --- [여러 노드 묶기 (클러스터)] ---
+// 서버 하나(JVM 하나)로는 감당할 수 있는 접속자 수에 한계가 있어서, 여러 ChatServer 노드를 띄우고
+// 노드끼리 ClusterTransport로 이어서 하나의 채팅 서버처럼 보이게 한다.
+//    - 방송 : 방 안의 메시지/입장 알림을 다른 노드에도 보내고, 받은 노드는 자기 접속자 중 그 방 사람들에게 나눠 준다.
+//    - 명단 : 다른 노드의 접속자(ONLINE/OFFLINE)와 방 위치(ENTER/EXIT)를 기억해 두고 /userlist, /rooms에 합친다.
+//    - 귓속말 : 받는 사람이 다른 노드에 있으면 그 노드로 보낸다. (DELIVER)
+//              오프라인 보관함은 노드마다 있으므로, 누가 어느 노드에 로그인하든 다른 노드들이 자기 보관함을 그쪽으로 보내 준다.
+//    - 중복 로그인 / 회원가입 ID 선점 : 로그인(가입) 직전에 모든 노드에게 "이 ID 내가 써도 되냐"고 물어보고(CLAIM)
+//      전원이 찬성(VOTE)해야 진행한다. 두 노드가 동시에 같은 ID를 요청하면 노드 이름이 작은 쪽이 이긴다.
+//      정해진 시간(-Dchat.cluster.claimTimeoutMs, 기본 1000) 안에 답이 없는 노드는 찬성으로 본다.
+// 노드를 안 묶으면(-Dchat.cluster.node 없음) transport가 null이고, 모든 메서드가 혼자 도는 서버처럼 동작한다.
+//
+// 노드 사이 메시지 : 종류<TAB>필드... (마지막 필드는 탭/줄바꿈이 들어 있어도 된다)
+//    CLAIM 키 번호 / VOTE 키 번호 1|0 / ONLINE 아이디 / OFFLINE 아이디 / ENTER 방 아이디 / EXIT 방 아이디
+//    ROOM 방 내용 / CHAT 방 내용 / DELIVER 아이디 내용 / USER users.dat한줄 / SPENT 재접속토큰
+class Cluster implements ClusterTransport.Listener {
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "cluster-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String localNode;
+    private final ClusterTransport transport;
+    private final long claimTimeoutMs;
+
+    // 다른 노드의 접속자 : 아이디 -> 노드 이름
+    private final ConcurrentHashMap<String, String> remoteUsers = new ConcurrentHashMap<>();
+    // 다른 노드의 방 위치 : 방 이름 -> 그 방에 있는 (다른 노드의) 아이디들
+    private final ConcurrentHashMap<String, Set<String>> remoteRooms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> remoteRoomOf = new ConcurrentHashMap<>(); // 아이디 -> 방
+
+    // 내가 진행 중인 선점 요청 : 키 -> 요청
+    private final ConcurrentHashMap<String, Claim> claims = new ConcurrentHashMap<>();
+    private final AtomicLong claimSeq = new AtomicLong();
+
+    Cluster(String localNode, ClusterTransport transport, long claimTimeoutMs) {
+        this.localNode = localNode;
+        this.transport = transport;
+        this.claimTimeoutMs = claimTimeoutMs;
+    }
+
+    static Cluster fromSystemProperties() throws IOException {
+        ClusterTransport transport = ClusterTransport.fromSystemProperties();
+        return new Cluster(System.getProperty("chat.cluster.node", "standalone"), transport,
+                Long.getLong("chat.cluster.claimTimeoutMs", 1000));
+    }
+
+    void start() throws IOException {
+        if (transport != null) transport.start(localNode, this);
+    }
+
+    boolean isEnabled() {
+        return transport != null;
+    }
+
+    String localNode() {
+        return localNode;
+    }
+
+    // --- [이 노드에서 일어난 일을 다른 노드에 알리기] ---
+
+    void userOnline(String userID) {
+        send("ONLINE", userID);
+    }
+
+    void userOffline(String userID) {
+        send("OFFLINE", userID);
+    }
+
+    void enterRoom(String room, String userID) {
+        send("ENTER", room, userID);
+    }
+
+    void exitRoom(String room, String userID) {
+        send("EXIT", room, userID);
+    }
+
+    // 방 전체 방송 (입장 알림 등). chat이면 대화 기록에도 남겨야 하는 채팅 메시지이다.
+    void relayRoom(String room, String text, boolean chat) {
+        send(chat ? "CHAT" : "ROOM", room, text);
+    }
+
+    void userRegistered(UserStore.UserRecord record) {
+        send("USER", record.toLine());
+    }
+
+    // 이 노드에서 쓴 재접속 토큰을 다른 노드에서도 다시 못 쓰게 한다.
+    void tokenSpent(String token) {
+        send("SPENT", token);
+    }
+
+    // 다른 노드에 있는 접속자에게 한 줄을 전해 달라고 한다.
+    void deliver(String node, String userID, String line) {
+        if (transport != null) transport.send(node, "DELIVER\t" + userID + "\t" + line);
+    }
+
+    private void send(String type, String... fields) {
+        if (transport == null) return;
+        transport.broadcast(type + "\t" + String.join("\t", fields));
+    }
+
+    // --- [조회] ---
+
+    // 다른 노드에 접속해 있으면 그 노드 이름, 아니면 null
+    String nodeOf(String userID) {
+        return remoteUsers.get(userID);
+    }
+
+    // 다른 노드에서 이 방에 들어와 있는 아이디들
+    Set<String> remoteMembers(String room) {
+        Set<String> members = remoteRooms.get(room);
+        return members != null ? members : Set.of();
+    }
+
+    // 다른 노드의 방별 인원 (/rooms 용)
+    Map<String, Integer> remoteRoomSizes() {
+        Map<String, Integer> sizes = new HashMap<>();
+        for (Map.Entry<String, Set<String>> e : remoteRooms.entrySet()) {
+            if (!e.getValue().isEmpty()) sizes.put(e.getKey(), e.getValue().size());
+        }
+        return sizes;
+    }
+
+    // --- [ID 선점 (중복 로그인 / 중복 가입 막기)] ---
+    // 키 예 : "login:alice", "register:alice". 다른 모든 노드가 찬성하면 true.
+    CompletableFuture<Boolean> claim(String key) {
+        if (transport == null) return CompletableFuture.completedFuture(true);
+        Set<String> voters = transport.peers();
+        if (voters.isEmpty()) return CompletableFuture.completedFuture(true);
+        Claim claim = new Claim(key, claimSeq.incrementAndGet(), voters);
+        if (claims.putIfAbsent(key, claim) != null) {
+            return CompletableFuture.completedFuture(false); // 이 노드에서 이미 같은 ID를 요청 중이다.
+        }
+        transport.broadcast("CLAIM\t" + key + "\t" + claim.id);
+        TIMER.schedule(() -> claim.finish(true), claimTimeoutMs, TimeUnit.MILLISECONDS);
+        return claim.result;
+    }
+
+    // 다른 노드가 선점을 요청했을 때 이 노드의 대답
+    private boolean allow(String node, String key) {
+        Claim mine = claims.get(key);
+        if (mine != null) {
+            return node.compareTo(localNode) < 0; // 둘 다 요청 중이면 이름이 작은 노드가 이긴다.
+        }
+        int colon = key.indexOf(':');
+        String kind = key.substring(0, colon);
+        String userID = key.substring(colon + 1);
+        if (kind.equals("login")) return !ChatServer.sessions.contains(userID);
+        if (kind.equals("register")) return !ChatServer.users.contains(userID);
+        return true;
+    }
+
+    private final class Claim {
+        final String key;
+        final long id;
+        final Set<String> waiting;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Claim(String key, long id, Set<String> voters) {
+            this.key = key;
+            this.id = id;
+            this.waiting = new HashSet<>(voters);
+        }
+
+        synchronized void vote(String node, boolean yes) {
+            if (!waiting.remove(node)) return;
+            if (!yes) {
+                finish(false);
+            } else if (waiting.isEmpty()) {
+                finish(true);
+            }
+        }
+
+        void finish(boolean ok) {
+            if (result.complete(ok)) claims.remove(key, this);
+        }
+    }
+
+    // --- [다른 노드에서 온 일 처리] (전송 계층 스레드) ---
+
+    @Override
+    public void onPeerUp(String node) {
+        System.out.println("[cluster] 노드 연결됨 : " + node);
+        // 새로 연결된 노드에게 이 노드의 지금 접속자와 방 위치를 알려 준다.
+        for (ClientSession session : ChatServer.sessions.all()) {
+            if (!session.isJoined()) continue;
+            transport.send(node, "ONLINE\t" + session.getName());
+            String room = session.roomName();
+            if (room != null) transport.send(node, "ENTER\t" + room + "\t" + session.getName());
+        }
+    }
+
+    @Override
+    public void onPeerDown(String node) {
+        System.out.println("[cluster] 노드 연결 끊김 : " + node);
+        // 그 노드의 접속자들을 명단에서 빼고, 방마다 한 번에 퇴장 처리한다.
+        Map<String, List<String>> leftByRoom = new HashMap<>();
+        for (Map.Entry<String, String> e : remoteUsers.entrySet()) {
+            if (!e.getValue().equals(node)) continue;
+            String userID = e.getKey();
+            remoteUsers.remove(userID, node);
+            String room = remoteRoomOf.remove(userID);
+            if (room != null) {
+                removeRemoteMember(room, userID);
+                leftByRoom.computeIfAbsent(room, k -> new ArrayList<>()).add(userID);
+            }
+        }
+        for (Map.Entry<String, List<String>> e : leftByRoom.entrySet()) {
+            ChatRoom room = ChatServer.rooms.get(e.getKey());
+            if (room == null) continue;
+            room.broadcastLocal(Frame.of("MESSAGE [공지] 노드 " + node + " 연결이 끊겨 " + e.getValue().size()
+                    + "명이 퇴장했습니다.\n/userleave " + String.join(",", e.getValue())));
+        }
+        for (Claim claim : claims.values()) {
+            claim.vote(node, true); // 떠난 노드의 대답은 기다리지 않는다.
+        }
+    }
+
+    @Override
+    public void onMessage(String node, String message) {
+        String[] f = message.split("\t", 3);
+        switch (f[0]) {
+            case "CLAIM":
+                transport.send(node, "VOTE\t" + f[1] + "\t" + f[2] + "\t" + (allow(node, f[1]) ? "1" : "0"));
+                break;
+            case "VOTE": {
+                String[] v = f[2].split("\t", 2);
+                Claim claim = claims.get(f[1]);
+                if (claim != null && Long.toString(claim.id).equals(v[0])) claim.vote(node, v[1].equals("1"));
+                break;
+            }
+            case "ONLINE":
+                remoteUsers.put(f[1], node);
+                forwardMailbox(node, f[1]);
+                break;
+            case "OFFLINE":
+                remoteUsers.remove(f[1], node);
+                break;
+            case "ENTER": {
+                String old = remoteRoomOf.put(f[2], f[1]);
+                if (old != null) removeRemoteMember(old, f[2]);
+                remoteRooms.computeIfAbsent(f[1], k -> ConcurrentHashMap.newKeySet()).add(f[2]);
+                break;
+            }
+            case "EXIT":
+                if (remoteRoomOf.remove(f[2], f[1])) removeRemoteMember(f[1], f[2]);
+                break;
+            case "ROOM":
+            case "CHAT": {
+                ChatRoom room = ChatServer.rooms.get(f[1]);
+                if (room != null) room.receiveRemote(f[2], f[0].equals("CHAT"));
+                break;
+            }
+            case "DELIVER": {
+                ClientSession target = ChatServer.sessions.get(f[1]);
+                if (target != null && target.isJoined()) target.send(f[2]);
+                break;
+            }
+            case "SPENT":
+                ChatServer.tokens.spend(f[1]); // 서명이 맞는 토큰만 적힌다.
+                break;
+            case "USER": {
+                // 회원 명부에 바로 들어간다. 키 확인을 마친 노드가 보낸 것만 여기까지 온다. (ClusterTransport.Listener)
+                String[] parts = (f[1] + (f.length > 2 ? "\t" + f[2] : "")).split(",", 5);
+                if (parts.length == 5) {
+                    ChatServer.users.add(new UserStore.UserRecord(parts[0], parts[1], parts[2], parts[3], parts[4]));
+                }
+                break;
+            }
+            default:
+                System.out.println("[cluster] 알 수 없는 메시지 (" + node + ") : " + f[0]);
+        }
+    }
+
+    private void removeRemoteMember(String room, String userID) {
+        remoteRooms.computeIfPresent(room, (k, members) -> {
+            members.remove(userID);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    // 다른 노드에 로그인한 사람 앞으로 이 노드 보관함에 쌓인 귓속말이 있으면 그 노드로 보낸다.
+    private void forwardMailbox(String node, String userID) {
+        for (Mailbox.Letter letter : ChatServer.mailbox.takeAll(userID)) {
+            deliver(node, userID, letter.toMessage());
+        }
+    }
+}
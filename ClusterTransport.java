@@ -0,0 +1,68 @@
+package Chatroom;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HexFormat;
+import java.util.Set;
+
+// --- [노드 간 전송 계층] ---
+// 여러 ChatServer 노드가 서로 메시지를 주고받는 통로이다. Cluster는 이 인터페이스만 보고,
+// 실제로 어떻게 보내는지(TCP 직접 연결, 메시지 브로커 등)는 구현체가 정한다.
+// 지금은 노드끼리 TCP로 전부 연결하는 TcpMeshTransport 하나가 있다. (-Dchat.cluster.transport=tcp)
+//    - 메시지는 문자열 하나 (줄바꿈이 들어 있어도 된다). 한 노드에서 보낸 것은 보낸 순서대로 도착해야 한다.
+//    - 연결이 끊긴 노드에게 보낸 메시지는 버려도 된다. (다시 연결되면 onPeerUp에서 상태를 새로 맞춘다)
+//    - 노드끼리는 공유 비밀 키로 서로 확인해야 한다. 확인되지 않은 상대의 메시지를 Listener로 넘기면 안 된다.
+interface ClusterTransport {
+
+    // 전송 계층이 Cluster에게 알려 주는 일들. 전송 계층의 스레드에서 불린다.
+    interface Listener {
+        void onPeerUp(String node);
+
+        // 키 확인을 마친 노드가 보낸 것만 불린다. node는 확인된 그 노드의 이름이다.
+        // (그래서 Cluster는 메시지마다 보낸 노드를 다시 확인하지 않는다)
+        void onMessage(String node, String message);
+
+        void onPeerDown(String node);
+    }
+
+    void start(String localNode, Listener listener) throws IOException;
+
+    // 지금 연결된 모든 노드에게
+    void broadcast(String message);
+
+    // 특정 노드 하나에게 (연결되어 있지 않으면 버린다)
+    void send(String node, String message);
+
+    // 지금 연결된 노드들
+    Set<String> peers();
+
+    void close();
+
+    // -Dchat.cluster.node 가 없으면 혼자 도는 서버이다. (null)
+    // 다른 노드의 연결은 -Dchat.cluster.bind (기본 127.0.0.1) 에서만 받는다. 다른 컴퓨터의 노드와 묶을 때만 바깥 주소를 준다.
+    static ClusterTransport fromSystemProperties() throws IOException {
+        if (System.getProperty("chat.cluster.node") == null) return null;
+        String type = System.getProperty("chat.cluster.transport", "tcp");
+        if (type.equalsIgnoreCase("tcp")) {
+            return new TcpMeshTransport(InetAddress.getByName(System.getProperty("chat.cluster.bind", "127.0.0.1")),
+                    Integer.getInteger("chat.cluster.port", 60001),
+                    System.getProperty("chat.cluster.peers", ""), secret());
+        }
+        throw new IllegalArgumentException("알 수 없는 chat.cluster.transport : " + type);
+    }
+
+    // 노드 간 공유 비밀 키 : -Dchat.cluster.secret 이 있으면 그 값, 없으면 -Dchat.cluster.keyFile (기본 cluster.key, 16진수 한 줄).
+    // 모든 노드가 같은 키를 가져야 하므로 resume.key처럼 저절로 만들지 않는다. 둘 다 없으면 노드를 묶지 않고 멈춘다.
+    private static byte[] secret() throws IOException {
+        String secret = System.getProperty("chat.cluster.secret");
+        if (secret != null && !secret.isEmpty()) return secret.getBytes(StandardCharsets.UTF_8);
+        File file = new File(System.getProperty("chat.cluster.keyFile", "cluster.key"));
+        if (!file.exists()) {
+            throw new IllegalArgumentException("노드 간 비밀 키가 없습니다. -Dchat.cluster.secret 이나 " + file + " 파일을 모든 노드에 같게 주세요.");
+        }
+        return HexFormat.of().parseHex(Files.readString(file.toPath(), StandardCharsets.UTF_8).trim());
+    }
+}
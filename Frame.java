@@ -0,0 +1,107 @@
+package Chatroom;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.LongAdder;
+
+// --- [전송용 프레임] ---
+// 한 줄짜리 메시지를 소켓에 그대로 쓸 수 있는 바이트로 미리 인코딩해 둔 불변(immutable) 객체이다.
+// 예전에는 broadcast 한 번에 접속자 수만큼 PrintWriter가 같은 문자열을 각자 인코딩했지만,
+// 이제는 Frame을 딱 한 번 만들고 모든 접속자의 송신 대기열에 같은 객체를 넣는다.
+// 바이트 배열은 절대 수정하지 않으므로 여러 writer 스레드가 동시에 읽어도 안전하다.
+// 바이너리 프로토콜(WireCodec)로 협상한 접속자가 있으면, 그 형식의 바이트도 처음 필요할 때 한 번만 만들어
+// 같이 들고 있는다. (여러 스레드가 동시에 만들어도 결과가 같으므로 락 없이 마지막 것을 쓴다)
+// 압축(deflate)까지 협상한 접속자용 바이트도 같은 방식으로 한 번만 만든다. 접속자가 1,000명이어도 압축은 한 번이다.
+final class Frame {
+    // 접속자마다 협상한 전송 형식
+    enum Wire { TEXT, BINARY, DEFLATE }
+
+    // 텍스트 프로토콜은 예전 클라이언트(Scanner)와 같은 기본 문자셋을 쓴다.
+    static final Charset CHARSET = Charset.defaultCharset();
+
+    // 바이너리 협상 응답. writer는 이 Frame까지 텍스트로 쓰고, 그다음부터 바이너리로 쓴다.
+    static final Frame PROTO_OK = of(WireCodec.PROTO_OK);
+    static final Frame PROTO_OK_DEFLATE = of(WireCodec.PROTO_OK_DEFLATE);
+
+    // 압축으로 아낀 바이트 (ServerMetrics). 접속자마다 보낸 만큼 센다.
+    static final LongAdder deflateSaved = new LongAdder();
+
+    private final String text;
+    private final byte[] bytes; // 메시지 + 줄바꿈('\n')
+    private final ByteBuffer shared;
+    private volatile byte[] binary; // 바이너리 프레임(들). 필요해질 때 만든다.
+    private volatile byte[] deflated; // 압축한 것. 작거나 줄지 않으면 binary와 같은 배열이다.
+
+    private Frame(String text) {
+        this.text = text;
+        this.bytes = (text + "\n").getBytes(CHARSET);
+        this.shared = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    static Frame of(String line) {
+        return new Frame(line);
+    }
+
+    // 인코딩하기 전의 원래 문자열 (다른 노드로 보낼 때 쓴다)
+    String text() {
+        return text;
+    }
+
+    int length() {
+        return bytes.length;
+    }
+
+    // 이 Frame을 wire 형식으로 쓴 다음 접속자가 쓸 형식. 협상 응답(PROTO_OK...)까지는 텍스트로 나간다.
+    Wire next(Wire wire) {
+        if (this == PROTO_OK) return Wire.BINARY;
+        if (this == PROTO_OK_DEFLATE) return Wire.DEFLATE;
+        return wire;
+    }
+
+    // 블로킹 writer용 : 스트림에 그대로 쓴다. (다시 인코딩하지 않는다) 쓴 바이트 수를 돌려준다.
+    int writeTo(OutputStream out, Wire wire) throws IOException {
+        byte[] b = bytes(wire);
+        out.write(b);
+        return b.length;
+    }
+
+    // NIO용 : 같은 바이트를 가리키는 읽기 전용 뷰. 위치(position)만 접속자마다 따로 갖고 복사는 하지 않는다.
+    ByteBuffer buffer(Wire wire) {
+        return wire == Wire.TEXT ? shared.duplicate() : ByteBuffer.wrap(bytes(wire)).asReadOnlyBuffer();
+    }
+
+    private byte[] bytes(Wire wire) {
+        switch (wire) {
+            case BINARY:
+                return binary();
+            case DEFLATE:
+                byte[] d = deflated();
+                if (d != binary) deflateSaved.add(binary.length - d.length);
+                return d;
+            default:
+                return bytes;
+        }
+    }
+
+    private byte[] deflated() {
+        byte[] d = deflated;
+        if (d == null) {
+            byte[] b = binary();
+            d = b.length >= WireCodec.DEFLATE_MIN ? WireCodec.deflate(b) : null;
+            if (d == null) d = b;
+            deflated = d;
+        }
+        return d;
+    }
+
+    private byte[] binary() {
+        byte[] b = binary;
+        if (b == null) {
+            b = WireCodec.encodeServerLines(text);
+            binary = b;
+        }
+        return b;
+    }
+}
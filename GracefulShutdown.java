@@ -0,0 +1,159 @@
+package Chatroom;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// --- [정상 종료 / 재시작] ---
+// 예전에는 서버를 끄는 방법이 프로세스를 죽이는 것뿐이라서, 대기열에 있던 메시지는 사라지고
+// 모든 클라이언트가 동시에 끊겨서 다시 연결 + 비밀번호 로그인(해시)을 한꺼번에 쏟아냈다.
+// 이제 SIGTERM(kill, Ctrl+C)을 받으면 shutdown hook에서 다음 순서로 정리하고 끝낸다.
+//    1. 새 연결을 받지 않는다. (listener를 닫는다)
+//    2. 로그인한 접속자마다 (아이디, 있던 방)을 sessions.dat에 적는다.
+//    3. 접속자마다 "SERVER_RESTART 기다릴ms 새토큰"을 보낸다.
+//       클라이언트는 이걸 받으면 스스로 끊고, 조금(기다릴ms ~ 두 배 사이 무작위) 기다렸다가 토큰으로 RESUME 한다.
+//       토큰을 새로 주는 이유 : 로그인할 때 받은 토큰은 오래 접속해 있었으면 이미 만료되었을 수 있다.
+//    4. 송신 대기열이 모두 빌 때까지 (최대 -Dchat.shutdown.drainMs) 기다린다. -> 위 공지까지 실제로 나간다.
+//    5. 대화 기록을 마저 쓰고 fsync한다.
+// 다시 켜진 서버는 시작할 때 sessions.dat을 읽어 두고(한 번 쓰고 지운다), 그 접속자가 돌아오면
+// 로비 대신 원래 있던 방으로 넣어 준다. RESUME은 서명 확인만 하므로 인증 작업자 풀을 거치지 않는다.
+// (토큰 서명 키는 resume.key에 남아 있으므로 재시작 전에 준 토큰도 그대로 통한다)
+final class GracefulShutdown {
+    private static final long DRAIN_MS = Long.getLong("chat.shutdown.drainMs", 5000);
+    private static final long RETRY_MS = Long.getLong("chat.shutdown.retryMs", 2000);
+
+    private final File path;
+    // 지난번 종료 때 접속해 있던 사람 -> 있던 방 (돌아오면 지운다)
+    private final ConcurrentHashMap<String, String> restored = new ConcurrentHashMap<>();
+    private volatile Closeable listener;
+    private volatile boolean stopping;
+
+    private GracefulShutdown(File path) {
+        this.path = path;
+    }
+
+    // 지난번에 남긴 상태를 읽는다. 토큰 유효 시간(maxAgeMillis)보다 오래된 것은 어차피 RESUME이 안 되므로 버린다.
+    static GracefulShutdown open(String fileName, long maxAgeMillis) throws IOException {
+        GracefulShutdown s = new GracefulShutdown(new File(fileName));
+        if (!s.path.exists()) return s;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(s.path), StandardCharsets.UTF_8))) {
+            String first = in.readLine();
+            long savedAt = first != null ? Long.parseLong(first.trim()) : 0;
+            if (System.currentTimeMillis() - savedAt <= maxAgeMillis) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab > 0) s.restored.put(line.substring(0, tab), line.substring(tab + 1));
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("[shutdown] " + fileName + " 형식이 잘못되어 무시합니다.");
+        }
+        Files.delete(s.path.toPath()); // 한 번만 쓴다.
+        return s;
+    }
+
+    int restoredCount() {
+        return restored.size();
+    }
+
+    // 엔진이 연결을 받기 시작할 때 알려 준다. (종료할 때 닫는다)
+    void setListener(Closeable listener) {
+        this.listener = listener;
+    }
+
+    // 종료 중이면 true. accept()가 listener를 닫아서 실패한 것인지 구별할 때 쓴다.
+    boolean isStopping() {
+        return stopping;
+    }
+
+    // 지난번 종료 때 이 접속자가 있던 방 (없으면 null). 한 번 꺼내면 지운다.
+    String takeRoom(String userID) {
+        return restored.remove(userID);
+    }
+
+    // --- [shutdown hook] ---
+    void run() {
+        stopping = true;
+        long start = System.nanoTime();
+        try {
+            Closeable l = listener;
+            if (l != null) l.close();
+        } catch (IOException e) {
+            // 이미 닫혔다.
+        }
+
+        int notified = 0;
+        try {
+            saveSessions();
+        } catch (IOException e) {
+            System.out.println("[shutdown] " + path + " 저장 실패 : " + e);
+        }
+        for (ClientSession session : ChatServer.sessions.all()) {
+            String name = session.getName();
+            if (name == null) continue;
+            session.send("SERVER_RESTART " + RETRY_MS + " " + ChatServer.tokens.issue(name));
+            notified++;
+        }
+        boolean drained = awaitDrained(start + TimeUnit.MILLISECONDS.toNanos(DRAIN_MS));
+        ChatServer.messages.close();
+        System.out.println("[shutdown] 접속자 " + notified + "명에게 재시작을 알렸습니다. 송신 대기열 "
+                + (drained ? "비움" : "시간 초과") + " (" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms)");
+    }
+
+    // (아이디, 방)을 임시 파일에 쓴 다음 한 번에 바꿔 넣는다. (쓰다가 죽어도 반쪽짜리 파일이 남지 않는다)
+    private void saveSessions() throws IOException {
+        File tmp = new File(path.getPath() + ".tmp");
+        int n = 0;
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             Writer w = new OutputStreamWriter(fos, StandardCharsets.UTF_8)) {
+            w.write(System.currentTimeMillis() + "\n");
+            for (ClientSession session : ChatServer.sessions.all()) {
+                String name = session.getName();
+                String room = session.roomName();
+                if (name == null || room == null) continue;
+                w.write(name + "\t" + room + "\n");
+                n++;
+            }
+            w.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp.toPath(), path.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("[shutdown] 접속자 " + n + "명의 상태를 " + path + "에 저장했습니다.");
+    }
+
+    // 모든 접속자의 송신 대기열이 빌 때까지 기다린다.
+    // 대기열에서 꺼낸 뒤 소켓에 쓰는 중인 마지막 묶음을 위해, 다 빈 것을 본 뒤에도 한 번 더 확인한다.
+    private static boolean awaitDrained(long deadline) {
+        int quiet = 0;
+        while (System.nanoTime() < deadline) {
+            boolean empty = true;
+            for (ClientSession session : ChatServer.sessions.all()) {
+                if (session.pendingOutbound() > 0) {
+                    empty = false;
+                    break;
+                }
+            }
+            quiet = empty ? quiet + 1 : 0;
+            if (quiet >= 2) return true;
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,48 @@
+package Chatroom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// --- [최근 대화 링 버퍼] ---
+// 방마다 최근 N개의 채팅 메시지(이미 인코딩된 Frame)를 메모리에 들고 있는다.
+// 누가 방에 들어오면 디스크를 읽지 않고 여기서 바로 꺼내서 보내 준다.
+// 크기가 고정이라 가득 차면 가장 오래된 것부터 덮어쓴다. (힙 사용량이 방 하나당 N개로 묶인다)
+// 잠금은 배열 칸 하나를 바꾸는 동안만 잡으므로 방송 속도에는 거의 영향이 없다.
+class HistoryRing {
+    private final Frame[] slots;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int next; // 다음에 쓸 칸
+    private int size;
+
+    HistoryRing(int capacity) {
+        this.slots = new Frame[Math.max(0, capacity)];
+    }
+
+    void add(Frame frame) {
+        if (slots.length == 0) return;
+        lock.lock();
+        try {
+            slots[next] = frame;
+            next = (next + 1) % slots.length;
+            if (size < slots.length) size++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 오래된 것부터 순서대로 복사해서 돌려준다.
+    List<Frame> snapshot() {
+        lock.lock();
+        try {
+            List<Frame> copy = new ArrayList<>(size);
+            int start = (next - size + slots.length) % Math.max(1, slots.length);
+            for (int i = 0; i < size; i++) {
+                copy.add(slots[(start + i) % slots.length]);
+            }
+            return copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package Chatroom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// --- [조용한 연결 정리 (heartbeat)] ---
+// 클라이언트의 네트워크가 갑자기 사라지면(와이파이 끊김, 노트북 덮기 등) FIN/RST가 오지 않으므로
+// TCP가 스스로 오류를 낼 때까지(수십 분) 그 연결은 명부에 남아서 방송을 계속 받고,
+// 블로킹 엔진에서는 Handler 스레드 하나를 그동안 붙잡고 있다.
+// 그래서 연결마다 "마지막으로 무언가 받은 시각"을 기록해 두고
+//    - pingMs 동안 아무것도 안 왔으면 PING을 보낸다. (클라이언트는 조용히 PONG으로 답한다)
+//    - timeoutMs 동안 아무것도 안 왔으면 죽은 연결로 보고 끊는다. -> 평소처럼 퇴장 공지가 나간다.
+//      단, PING을 아는 클라이언트(바이너리를 협상했거나 PONG을 보낸 적이 있는 연결)만 끊는다. 예전 텍스트 클라이언트는
+//      PING을 모르고 그냥 넘기므로, 한 번도 답하지 않은 채 timeoutMs가 지나면 끊지 않고 더 지켜보지 않는다. (legacy로 센다)
+//      그런 연결이 조용히 죽으면 예전처럼 TCP가 오류를 낼 때 정리된다. (ClientSession.answersPing)
+//
+// 연결마다 타이머 스레드를 두지 않고, 스레드 1개가 타이밍 휠(timing wheel) 하나로 모든 연결을 본다.
+//    - 휠은 칸(slot) WHEEL_SIZE개짜리 원형 배열이고, tickMs마다 한 칸씩 돈다.
+//    - 연결은 "다음에 볼 시각"이 속한 칸에 들어가 있다. 휠 한 바퀴보다 먼 시각이면 남은 바퀴 수(rounds)를 같이 적는다.
+//    - 한 칸을 볼 때는 그 칸에 든 연결만 확인하고, 아직 살아 있으면 다음에 볼 칸으로 옮긴다.
+//    그래서 연결이 몇만 개여도 tick 한 번의 일은 "지금 볼 차례인 연결 수"에 비례한다. (정렬도 락도 없다)
+// 받은 데이터가 있을 때 엔진이 하는 일은 touch() (volatile long 쓰기 한 번) 뿐이다.
+// 휠은 tick 스레드만 만지고, 다른 스레드에서 새로 등록한 연결은 incoming 큐를 거쳐 tick 스레드가 넣는다.
+final class IdleReaper {
+    private static final int WHEEL_SIZE = 512;
+    private static final Frame PING = Frame.of("PING");
+
+    // 서버 전체 통계 (ServerMetrics)
+    static final LongAdder pings = new LongAdder();
+    static final LongAdder evictions = new LongAdder();
+    static final LongAdder legacy = new LongAdder();
+
+    private final long pingNanos;
+    private final long timeoutNanos;
+    private final long tickNanos;
+    private final List<Watch>[] wheel;
+    private final ConcurrentLinkedQueue<Watch> incoming = new ConcurrentLinkedQueue<>();
+    private long tick; // tick 스레드만 쓴다.
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    IdleReaper(long pingMs, long timeoutMs, long tickMs) {
+        this.pingNanos = TimeUnit.MILLISECONDS.toNanos(pingMs);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+        this.wheel = new List[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+    }
+
+    // -Dchat.idle.pingMs (기본 30초, 0이면 끈다), -Dchat.idle.timeoutMs (기본 90초), -Dchat.idle.tickMs (기본 1초)
+    static IdleReaper fromSystemProperties() {
+        long ping = Long.getLong("chat.idle.pingMs", 30_000);
+        long timeout = Long.getLong("chat.idle.timeoutMs", 90_000);
+        long tick = Long.getLong("chat.idle.tickMs", 1000);
+        return new IdleReaper(ping, Math.max(timeout, ping), tick);
+    }
+
+    boolean isEnabled() {
+        return pingNanos > 0;
+    }
+
+    void start() {
+        if (!isEnabled()) return;
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idle-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::advance, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // 연결 하나를 지켜보기 시작한다. 죽은 것으로 보이면 evict를 (tick 스레드에서) 한 번 부른다.
+    // evict는 엔진이 연결을 닫는 방법이다. (블로킹 : 소켓 닫기, NIO : 이벤트 루프에 close 맡기기)
+    Watch watch(ClientSession session, Runnable evict) {
+        Watch w = new Watch(session, evict);
+        if (isEnabled()) incoming.add(w);
+        return w;
+    }
+
+    // --- [연결 1개의 기록] ---
+    static final class Watch {
+        private final ClientSession session;
+        private final Runnable evict;
+        private volatile long lastActivity = System.nanoTime();
+        private volatile boolean cancelled;
+        private long rounds; // 아래부터는 tick 스레드만 쓴다.
+
+        private Watch(ClientSession session, Runnable evict) {
+            this.session = session;
+            this.evict = evict;
+        }
+
+        // 무언가 받을 때마다 엔진이 부른다. (PONG도, 채팅도 모두 살아 있다는 뜻이다)
+        void touch() {
+            lastActivity = System.nanoTime();
+        }
+
+        // 연결이 닫혔다. 휠에서는 자기 칸 차례가 올 때 빠진다.
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    // --- [tick 한 번] ---
+    private void advance() {
+        try {
+            long now = System.nanoTime();
+            Watch w;
+            while ((w = incoming.poll()) != null) {
+                schedule(w, w.lastActivity + pingNanos, now);
+            }
+            tick++;
+            int slot = (int) (tick % WHEEL_SIZE);
+            List<Watch> due = wheel[slot];
+            wheel[slot] = new ArrayList<>(); // 아래에서 같은 칸으로 다시 넣을 수도 있다.
+            for (Watch watch : due) {
+                if (watch.cancelled) continue;
+                if (watch.rounds > 0) { // 아직 이번 바퀴가 아니다.
+                    watch.rounds--;
+                    wheel[slot].add(watch);
+                    continue;
+                }
+                check(watch, now);
+            }
+        } catch (RuntimeException e) {
+            // 예외가 나면 scheduleAtFixedRate가 멈춰 버리므로 여기서 삼킨다.
+            System.out.println("[idle] " + e);
+        }
+    }
+
+    private void check(Watch w, long now) {
+        long idle = now - w.lastActivity;
+        if (idle >= timeoutNanos && !w.session.answersPing()) {
+            legacy.increment();
+            w.cancelled = true;
+        } else if (idle >= timeoutNanos) {
+            evictions.increment();
+            System.out.println("[idle] " + (w.session.getName() != null ? w.session.getName() : "(로그인 전)")
+                    + " : " + TimeUnit.NANOSECONDS.toSeconds(idle) + "초 동안 응답이 없어 연결을 끊습니다.");
+            w.cancelled = true;
+            w.evict.run();
+        } else if (idle >= pingNanos) {
+            // 답(PONG)이 오면 touch()가 lastActivity를 당겨 놓는다. 안 오면 pingMs마다 다시 묻다가 timeoutMs에 끊는다.
+            pings.increment();
+            w.session.send(PING);
+            schedule(w, Math.min(w.lastActivity + timeoutNanos, now + pingNanos), now);
+        } else {
+            schedule(w, w.lastActivity + pingNanos, now);
+        }
+    }
+
+    // deadline(nanoTime)이 속한 칸에 넣는다. 적어도 다음 칸 이후로 간다.
+    private void schedule(Watch w, long deadline, long now) {
+        long ticks = Math.max(1, (deadline - now + tickNanos - 1) / tickNanos);
+        w.rounds = (ticks - 1) / WHEEL_SIZE;
+        wheel[(int) ((tick + ticks) % WHEEL_SIZE)].add(w);
+    }
+}
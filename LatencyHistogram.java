@@ -0,0 +1,79 @@
+package Chatroom;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// --- [지연 시간 히스토그램] ---
+// 값(마이크로초)을 로그 스케일 구간(bucket)에 나눠 세어서 p50/p99/p999 같은 백분위를 구한다.
+// 2의 거듭제곱 구간마다 8칸으로 나누므로 오차는 최대 12.5% 정도이고, 메모리는 고정 크기이다.
+// 여러 스레드가 동시에 기록해도 락이 없도록 구간마다 LongAdder를 쓴다.
+class LatencyHistogram {
+    private static final int LINEAR = 16;    // 0~15us는 1us 단위로 센다.
+    private static final int SUB_BUCKETS = 8; // 그 위로는 2배 구간마다 8칸
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - 3) * SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    void record(long micros) {
+        if (micros < 0) micros = 0;
+        counts[indexOf(micros)].increment();
+        total.increment();
+        max.accumulate(micros);
+    }
+
+    long count() {
+        return total.sum();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    // q(0.0 ~ 1.0) 백분위 값 (해당 구간의 윗 경계, 마이크로초)
+    long percentile(double q) {
+        long n = total.sum();
+        if (n == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i].sum();
+            if (seen >= target) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    // 사람이 읽기 좋은 한 줄 요약
+    String summary() {
+        return "n=" + count() + " p50=" + percentile(0.50) + "us p99=" + percentile(0.99)
+                + "us p999=" + percentile(0.999) + "us max=" + max() + "us";
+    }
+
+    private static int indexOf(long v) {
+        if (v < LINEAR) return (int) v;
+        int exponent = 63 - Long.numberOfLeadingZeros(v); // 4 이상
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (v >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int index) {
+        if (index < LINEAR) return index;
+        int exponent = (index - LINEAR) / SUB_BUCKETS + 4;
+        int sub = (index - LINEAR) % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + sub) << (exponent - 3);
+        return lower + (1L << (exponent - 3)) - 1;
+    }
+}
@@ -0,0 +1,197 @@
+package Chatroom;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// --- [오프라인 귓속말 보관함] ---
+// 예전에는 접속하지 않은 사람에게 귓속말을 보내면 "접속 중이 아닙니다"라는 답만 오고 메시지는 사라졌다.
+// 이제 가입된 회원(UserStore에 있는 ID)이면 받는 사람별 보관함에 넣어 두었다가, 그 사람이 로그인을 마치면 한꺼번에 전해 준다.
+//    - 찾기 : 받는 사람 ID -> 보관함 (HashMap 조회 한 번, 전체를 훑지 않는다)
+//    - 한도 : 받는 사람 1명당 -Dchat.mailbox.perUser 개 (기본 100),
+//             보내는 사람 1명이 아직 안 읽힌 채로 쌓아 둔 것 -Dchat.mailbox.perSender 개 (기본 50).
+//             한 사람이 아무리 보내도 디스크/메모리가 끝없이 늘지 않는다.
+//    - 기록 : mailbox.dat 파일에 덧붙이기만 한다. (P = 넣음, D = 그 사람 것 모두 전달함)
+//             전달된 기록이 쌓여 파일이 살아 있는 내용보다 훨씬 커지면 살아 있는 것만 새 파일로 옮겨 적는다.
+// 오프라인 귓속말은 드물기 때문에 잠금 하나로 색인과 파일을 같이 지킨다.
+class Mailbox {
+    private static final int PER_USER = Integer.getInteger("chat.mailbox.perUser", 100);
+    private static final int PER_SENDER = Integer.getInteger("chat.mailbox.perSender", 50);
+    private static final boolean FSYNC = Boolean.getBoolean("chat.mailbox.fsync");
+    private static final int COMPACT_MIN_LINES = 1000;
+
+    // 보관된 귓속말 하나 (불변)
+    static final class Letter {
+        final String from;
+        final long time;
+        final String text;
+
+        Letter(String from, long time, String text) {
+            this.from = from;
+            this.time = time;
+            this.text = text;
+        }
+
+        // 받는 사람에게 보낼 한 줄 : MESSAGE (귓속말 from 보낸사람, 10/17 14:05): 내용
+        String toMessage() {
+            return "MESSAGE (귓속말 from " + from + ", " + new SimpleDateFormat("MM/dd HH:mm").format(new Date(time)) + "): " + text;
+        }
+    }
+
+    // 넣기 결과
+    enum Result { STORED, RECIPIENT_FULL, SENDER_QUOTA, FAILED }
+
+    private final File path;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, ArrayDeque<Letter>> boxes = new HashMap<>(); // 받는 사람 -> 보관함
+    private final Map<String, Integer> pendingBySender = new HashMap<>(); // 보낸 사람 -> 아직 안 읽힌 수
+    private int stored;       // 지금 보관 중인 전체 개수
+    private int journalLines; // 파일의 줄 수
+    private FileOutputStream file;
+    private Writer journal;
+
+    private Mailbox(File path) throws IOException {
+        this.path = path;
+        load();
+        openJournal();
+    }
+
+    static Mailbox open(String fileName) throws IOException {
+        return new Mailbox(new File(fileName));
+    }
+
+    // 파일을 처음부터 다시 재생해서 보관함을 만든다.
+    private void load() throws IOException {
+        if (!path.exists()) return;
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                journalLines++;
+                String[] parts = line.split("\t", 5);
+                if (parts[0].equals("P") && parts.length == 5) {
+                    try {
+                        addLetter(parts[1], new Letter(parts[2], Long.parseLong(parts[3]), parts[4]));
+                    } catch (NumberFormatException e) {
+                        // 깨진 줄은 건너뛴다.
+                    }
+                } else if (parts[0].equals("D") && parts.length >= 2) {
+                    removeAll(parts[1]);
+                }
+            }
+        }
+    }
+
+    private void openJournal() throws IOException {
+        file = new FileOutputStream(path, true); // append 모드
+        journal = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8));
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return stored;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 접속하지 않은 회원에게 귓속말을 맡긴다. 한도를 넘으면 넣지 않는다.
+    Result put(String to, String from, String text) {
+        lock.lock();
+        try {
+            ArrayDeque<Letter> box = boxes.get(to);
+            if (box != null && box.size() >= PER_USER) return Result.RECIPIENT_FULL;
+            if (pendingBySender.getOrDefault(from, 0) >= PER_SENDER) return Result.SENDER_QUOTA;
+            Letter letter = new Letter(from, System.currentTimeMillis(), text);
+            write("P\t" + to + "\t" + from + "\t" + letter.time + "\t" + text);
+            addLetter(to, letter);
+            return Result.STORED;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Result.FAILED; // 기록하지 못했으면 보관하지 않는다.
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 로그인을 마친 회원의 보관함을 통째로 꺼내고 비운다. (없으면 빈 목록)
+    List<Letter> takeAll(String userID) {
+        lock.lock();
+        try {
+            if (!boxes.containsKey(userID)) return List.of();
+            List<Letter> letters = removeAll(userID);
+            try {
+                write("D\t" + userID);
+                if (journalLines > COMPACT_MIN_LINES && journalLines > 2 * stored) compact();
+            } catch (IOException e) {
+                // 전달은 이미 했다. 다음 재시작 때 한 번 더 전달될 수는 있다.
+                e.printStackTrace();
+            }
+            return letters;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // --- 아래는 모두 lock을 잡은 상태에서 부른다 ---
+    private void addLetter(String to, Letter letter) {
+        boxes.computeIfAbsent(to, k -> new ArrayDeque<>()).addLast(letter);
+        pendingBySender.merge(letter.from, 1, Integer::sum);
+        stored++;
+    }
+
+    private List<Letter> removeAll(String userID) {
+        ArrayDeque<Letter> box = boxes.remove(userID);
+        if (box == null) return List.of();
+        for (Letter letter : box) {
+            pendingBySender.computeIfPresent(letter.from, (k, n) -> n > 1 ? n - 1 : null);
+        }
+        stored -= box.size();
+        return new ArrayList<>(box);
+    }
+
+    private void write(String line) throws IOException {
+        journal.write(line);
+        journal.write('\n');
+        journal.flush();
+        if (FSYNC) file.getFD().sync();
+        journalLines++;
+    }
+
+    // 살아 있는 귓속말만 새 파일에 적고, 다 쓴 뒤 원래 파일과 바꿔치기한다. (중간에 죽어도 원래 파일은 그대로)
+    private void compact() throws IOException {
+        File tmp = new File(path.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             Writer w = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, ArrayDeque<Letter>> e : boxes.entrySet()) {
+                for (Letter letter : e.getValue()) {
+                    w.write("P\t" + e.getKey() + "\t" + letter.from + "\t" + letter.time + "\t" + letter.text + "\n");
+                }
+            }
+            w.flush();
+            fos.getFD().sync();
+        }
+        journal.close();
+        Files.move(tmp.toPath(), path.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journalLines = stored;
+        openJournal();
+    }
+}
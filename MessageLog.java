@@ -0,0 +1,317 @@
+package Chatroom;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// --- [대화 기록 (append-only 로그)] ---
+// 방송된 채팅 메시지를 디스크에 덧붙여서 남긴다. 서버를 다시 켜도 최근 대화를 보여줄 수 있게 하기 위함이다.
+//    - 방송하는 스레드는 대기열에 넣기(offer)만 하고 바로 돌아간다. 실제 파일 쓰기는 전용 스레드 1개가 한다.
+//      대기열이 가득 차면(디스크가 못 따라오면) 방송을 막지 않고 기록만 버린다. (dropped로 센다)
+//    - 전용 스레드는 쌓인 것을 한꺼번에 꺼내서 쓰고 flush한 뒤, fsync는 -Dchat.log.fsyncMs 마다 한 번만 한다.
+//      (group commit : 메시지 1,000개가 몰려도 fsync는 한 번. 0이면 묶음마다 fsync)
+//    - 파일은 segment 단위로 나눈다. 크기가 -Dchat.log.segmentBytes를 넘으면 새 파일로 넘어가고,
+//      -Dchat.log.maxSegments 개보다 많아지면 가장 오래된 파일부터 지운다. (디스크 사용량 상한)
+//    - 쓰다가 오류가 나면(디스크가 꽉 참 등) 그 묶음은 버리고(dropped, errors로 센다) 지금 파일을 닫은 뒤,
+//      잠시 쉬었다가 다음 기록부터 새 segment에 다시 써 본다. 전용 스레드는 close() 전에는 끝나지 않는다.
+// 한 줄 형식 : 시각(ms)<TAB>방이름<TAB>보낸 줄 (예 : "MESSAGE alice: 안녕")
+class MessageLog {
+    private static final String SUFFIX = ".log";
+    private static final long RETRY_MS = 1000; // 쓰기 오류 뒤 다시 써 보기까지 쉬는 시간
+    private static final long CLOSE_WAIT_MS = 5000;
+
+    private static final class Entry {
+        final long time;
+        final String room;
+        final String line;
+
+        Entry(long time, String room, String line) {
+            this.time = time;
+            this.room = room;
+            this.line = line;
+        }
+    }
+
+    private static final Entry CLOSE = new Entry(0, "", ""); // 전용 스레드에게 "그만"이라고 알리는 표시
+
+    private final File dir;
+    private final long segmentBytes;
+    private final int maxSegments;
+    private final long fsyncMs;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    final LongAdder dropped = new LongAdder();
+    final LongAdder errors = new LongAdder(); // 쓰기 오류 횟수
+    private volatile SearchIndex index; // 있으면 쓰는 줄마다 검색 색인에도 넣는다.
+
+    // 아래는 전용 스레드만 건드린다.
+    private int segmentIndex;
+    private FileOutputStream file;
+    private OutputStream out;
+    private long segmentSize;
+    private boolean dirty; // flush는 했지만 아직 fsync하지 않은 내용이 있다.
+    private long lastSync;
+
+    private MessageLog(File dir, long segmentBytes, int maxSegments, long fsyncMs, int queueCapacity) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.fsyncMs = fsyncMs;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("대화 기록 폴더를 만들 수 없습니다 : " + dir);
+        }
+        int[] existing = segments();
+        this.segmentIndex = existing.length == 0 ? 0 : existing[existing.length - 1];
+        // 재시작하면 첫 기록을 쓸 때 새 segment를 연다. (예전 파일은 건드리지 않고, 빈 파일도 만들지 않는다)
+        this.writer = new Thread(this::writeLoop, "message-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    static MessageLog fromSystemProperties() throws IOException {
+        return new MessageLog(new File(System.getProperty("chat.log.dir", "chatlog")),
+                Long.getLong("chat.log.segmentBytes", 16L << 20),
+                Integer.getInteger("chat.log.maxSegments", 8),
+                Long.getLong("chat.log.fsyncMs", 1000),
+                Integer.getInteger("chat.log.queue", 65536));
+    }
+
+    // 방송하는 스레드에서 불린다. 절대 기다리지 않는다.
+    void append(String room, String line) {
+        if (!queue.offer(new Entry(System.currentTimeMillis(), room, line))) {
+            dropped.increment();
+        }
+    }
+
+    File dir() {
+        return dir;
+    }
+
+    // 서버 시작 시 한 번 (아직 아무것도 기록하기 전) : 이후 기록을 검색 색인에도 넣게 한다.
+    // 그 전에 색인이 마지막으로 넣은 기록 위치 뒤에 남은 기록을 읽어서 색인을 따라잡게 한다.
+    // (색인 없이 쌓인 예전 기록, 서버가 갑자기 죽어서 색인 파일로 못 내려 쓴 메시지) 넣은 줄 수를 돌려준다.
+    int indexTo(SearchIndex search) throws IOException {
+        SearchIndex.LogPosition done = search.logPosition();
+        int n = 0;
+        for (int i : segments()) {
+            if (i < done.segment) continue; // 통째로 이미 색인된 파일
+            long offset = i == done.segment ? done.offset : 0;
+            try (FileInputStream in = new FileInputStream(segmentFile(i))) {
+                in.getChannel().position(offset);
+                BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                String line;
+                while ((line = br.readLine()) != null) {
+                    offset += line.getBytes(StandardCharsets.UTF_8).length + 1; // write()가 쓴 그대로 (UTF-8 + "\n")
+                    String[] parts = line.split("\t", 3);
+                    if (parts.length < 3) continue;
+                    long time;
+                    try {
+                        time = Long.parseLong(parts[0]);
+                    } catch (NumberFormatException e) {
+                        continue; // 깨진 줄
+                    }
+                    search.add(time, parts[1], parts[2], new SearchIndex.LogPosition(i, offset));
+                    n++;
+                }
+            }
+        }
+        this.index = search;
+        return n;
+    }
+
+    // 서버를 끌 때 : 대기열에 남은 것까지 모두 쓰고 fsync한 뒤 돌아온다.
+    // 종료 훅에서 불리므로 전용 스레드가 없거나 대기열이 비지 않아도 CLOSE_WAIT_MS 안에는 돌아온다.
+    void close() {
+        try {
+            if (!writer.isAlive()) return;
+            if (!queue.offer(CLOSE, CLOSE_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                System.out.println("[log] 대화 기록 대기열이 비지 않아 마저 쓰지 못하고 끝냅니다.");
+                return;
+            }
+            writer.join(CLOSE_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 서버 시작 시 한 번 : 디스크에서 그 방의 최근 n줄을 (오래된 순서로) 읽어 온다.
+    // 최신 segment부터 거꾸로 읽다가 n줄이 모이면 멈춘다.
+    List<String> recent(String room, int n) throws IOException {
+        List<String> result = new ArrayList<>();
+        if (n <= 0) return result;
+        int[] existing = segments();
+        for (int i = existing.length - 1; i >= 0 && result.size() < n; i--) {
+            ArrayDeque<String> tail = new ArrayDeque<>();
+            File f = segmentFile(existing[i]);
+            try (BufferedReader br = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    String[] parts = line.split("\t", 3);
+                    if (parts.length < 3 || !parts[1].equals(room)) continue; // 깨진 줄(쓰다 만 마지막 줄 등)은 건너뛴다.
+                    tail.addLast(parts[2]);
+                    if (tail.size() > n - result.size()) tail.removeFirst();
+                }
+            }
+            result.addAll(0, tail);
+        }
+        return result;
+    }
+
+    // --- 여기서부터는 전용 스레드 ---
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>();
+        long idleWait = fsyncMs > 0 ? fsyncMs : 1000;
+        while (true) {
+            boolean closing = false;
+            int written = 0; // 이번 묶음에서 파일에 쓴 수
+            try {
+                Entry first = queue.poll(idleWait, TimeUnit.MILLISECONDS);
+                if (first == null) { // 한가할 때 밀린 fsync를 마저 한다.
+                    if (dirty) sync();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, 4096);
+                for (Entry e : batch) {
+                    if (e == CLOSE) {
+                        closing = true;
+                        continue;
+                    }
+                    write(e);
+                    written++;
+                }
+                batch.clear();
+                if (out != null) {
+                    out.flush();
+                    dirty = true;
+                    if (closing || fsyncMs <= 0 || System.currentTimeMillis() - lastSync >= fsyncMs) sync();
+                    if (closing) out.close();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                // 디스크 문제로 기록을 못 남겨도 채팅은 계속되어야 한다. 이 묶음에서 못 쓴 것은 버리고,
+                // 지금 파일은 닫아서 다음 기록부터 새 segment에 다시 써 본다.
+                errors.increment();
+                System.out.println("[log] 대화 기록 쓰기 실패 : " + e);
+                closing = batch.contains(CLOSE);
+                dropped.add(Math.max(0, batch.size() - written - (closing ? 1 : 0)));
+                batch.clear();
+                abandonSegment();
+                if (!closing) pause();
+            }
+            if (closing) {
+                closeIndex();
+                return;
+            }
+        }
+    }
+
+    // 쓰기 오류가 난 segment를 닫는다. (닫다가 나는 오류는 이미 센 것과 같은 원인이므로 무시한다)
+    private void abandonSegment() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+        out = null;
+        file = null;
+        dirty = false;
+    }
+
+    // 오류가 계속되는 동안 묶음마다 실패를 찍지 않도록 잠시 쉰다. 그동안 들어온 기록은 대기열이 받는다.
+    private void pause() {
+        try {
+            Thread.sleep(RETRY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Entry e) throws IOException {
+        byte[] bytes = (e.time + "\t" + e.room + "\t" + e.line + "\n").getBytes(StandardCharsets.UTF_8);
+        if (out == null) {
+            openNextSegment();
+        } else if (segmentSize > 0 && segmentSize + bytes.length > segmentBytes) {
+            out.flush();
+            sync();
+            out.close();
+            openNextSegment();
+        }
+        out.write(bytes);
+        segmentSize += bytes.length;
+        SearchIndex search = index;
+        if (search != null) {
+            try {
+                search.add(e.time, e.room, e.line, new SearchIndex.LogPosition(segmentIndex, segmentSize));
+            } catch (IOException ex) {
+                // 색인 파일을 못 써도 기록은 계속한다. 그 segment만 검색에서 빠진다.
+                System.out.println("[search] 색인 파일 쓰기 실패 : " + ex);
+            }
+        }
+    }
+
+    // 메모리에 남은 색인을 파일로 내려 쓴다. (다음 시작 때 기록을 다시 읽지 않아도 되게)
+    private void closeIndex() {
+        SearchIndex search = index;
+        if (search == null) return;
+        try {
+            search.close();
+        } catch (IOException e) {
+            System.out.println("[search] 색인 파일 쓰기 실패 : " + e);
+        }
+    }
+
+    private void sync() throws IOException {
+        file.getFD().sync();
+        dirty = false;
+        lastSync = System.currentTimeMillis();
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentIndex++;
+        file = new FileOutputStream(segmentFile(segmentIndex), true);
+        out = new BufferedOutputStream(file, 64 * 1024);
+        segmentSize = 0;
+        // 보존 개수를 넘는 오래된 segment를 지운다.
+        int[] existing = segments();
+        for (int i = 0; i < existing.length - maxSegments; i++) {
+            if (!segmentFile(existing[i]).delete()) {
+                System.out.println("[log] 오래된 대화 기록을 지우지 못했습니다 : " + segmentFile(existing[i]));
+            }
+        }
+    }
+
+    private File segmentFile(int index) {
+        return new File(dir, String.format("%08d", index) + SUFFIX);
+    }
+
+    // 폴더 안의 segment 번호들 (오름차순)
+    private int[] segments() {
+        String[] names = dir.list((d, name) -> name.matches("\\d{8}\\" + SUFFIX));
+        if (names == null) return new int[0];
+        int[] indexes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            indexes[i] = Integer.parseInt(names[i].substring(0, 8));
+        }
+        Arrays.sort(indexes);
+        return indexes;
+    }
+}
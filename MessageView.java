@@ -0,0 +1,117 @@
+package Chatroom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+
+// --- [채팅 화면 (메시지 창)] ---
+// 예전에는 메시지가 올 때마다 네트워크 스레드가 messageArea.append()를 바로 불렀다.
+// 바쁜 방에서는 줄마다 문서 변경 -> 줄바꿈 계산(layout) -> 다시 그리기가 EDT에서 일어나서 화면이 버벅였고,
+// 문서는 끝없이 커져서 오래 켜 둔 클라이언트는 메모리가 계속 늘었다.
+// 이제는
+//    1. 네트워크 스레드는 줄을 incoming 큐에 넣기만 한다. (Swing을 건드리지 않는다)
+//    2. 큐가 비어 있다가 처음 들어온 줄이 한 프레임(16ms) 타이머를 건다.
+//       타이머가 EDT에서 그동안 쌓인 줄을 한 번에 꺼내 문자열 하나로 붙이고, append를 한 번만 한다.
+//       -> 초당 메시지가 수천 개여도 EDT 작업은 초당 최대 60번이다.
+//    3. 화면에는 최근 maxLines 줄만 남기고(-Dchat.client.scrollback, 기본 5000) 앞쪽은 잘라낸다.
+//       한 묶음이 maxLines보다 많으면 어차피 잘릴 앞부분은 문서에 넣지도 않는다.
+//    4. -Dchat.client.uiStats=true 이면 메시지 1,000개를 그리는 데 EDT를 몇 ms 썼는지 출력한다.
+final class MessageView {
+    static final int SCROLLBACK = Integer.getInteger("chat.client.scrollback", 5000);
+    private static final int FRAME_MS = 16;
+    private static final boolean REPORT = Boolean.getBoolean("chat.client.uiStats");
+
+    private final JTextArea area;
+    private final int maxLines;
+    private final ConcurrentLinkedQueue<String> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Timer frame;
+    private final List<String> batch = new ArrayList<>(); // 아래부터는 EDT에서만 쓴다.
+    private final StringBuilder text = new StringBuilder();
+
+    // EDT 시간 통계
+    private long edtNanos;
+    private long messages;
+    private long batches;
+    private long windowNanos;
+    private long windowMessages;
+
+    MessageView(JTextArea area, int maxLines) {
+        this.area = area;
+        this.maxLines = Math.max(1, maxLines);
+        this.frame = new Timer(FRAME_MS, e -> flush());
+        this.frame.setRepeats(false);
+    }
+
+    // 아무 스레드에서나 부를 수 있다. 화면에는 다음 프레임에 나타난다.
+    void append(String line) {
+        incoming.add(line);
+        if (scheduled.compareAndSet(false, true)) {
+            frame.restart();
+        }
+    }
+
+    // 쌓인 줄을 한 번에 화면에 붙인다. (EDT)
+    void flush() {
+        scheduled.set(false); // 꺼내는 도중에 들어온 줄은 다음 프레임이 맡는다.
+        String line;
+        while ((line = incoming.poll()) != null) {
+            batch.add(line);
+        }
+        if (batch.isEmpty()) return;
+        long start = System.nanoTime();
+
+        int from = Math.max(0, batch.size() - maxLines); // 어차피 잘릴 앞부분은 건너뛴다.
+        if (from > 0) area.setText("");
+        for (int i = from; i < batch.size(); i++) {
+            text.append(batch.get(i)).append('\n');
+        }
+        area.append(text.toString());
+        trim();
+        // 스크롤을 항상 맨 아래(최신 메시지)로 내린다.
+        area.setCaretPosition(area.getDocument().getLength());
+
+        record(System.nanoTime() - start, batch.size());
+        text.setLength(0);
+        batch.clear();
+    }
+
+    // 앞에서부터 잘라서 maxLines 줄만 남긴다. (마지막 '\n' 뒤의 빈 줄 하나도 한 줄로 센다)
+    private void trim() {
+        int excess = area.getLineCount() - 1 - maxLines;
+        if (excess <= 0) return;
+        try {
+            area.getDocument().remove(0, area.getLineEndOffset(excess - 1));
+        } catch (BadLocationException e) {
+            area.setText(""); // 일어나지 않는다.
+        }
+    }
+
+    private void record(long nanos, int n) {
+        edtNanos += nanos;
+        messages += n;
+        batches++;
+        windowNanos += nanos;
+        windowMessages += n;
+        if (REPORT && windowMessages >= 1000) {
+            System.out.printf("[ui] 메시지 1,000개당 EDT %.2fms (최근 %d개, 누적 %d개 / 묶음 %d번)%n",
+                    windowNanos / 1e6 * 1000 / windowMessages, windowMessages, messages, batches);
+            windowNanos = 0;
+            windowMessages = 0;
+        }
+    }
+
+    // 지금까지 메시지 1,000개를 그리는 데 쓴 평균 EDT 시간 (ms). 벤치마크에서 읽는다.
+    double edtMillisPer1000() {
+        return messages == 0 ? 0 : edtNanos / 1e6 * 1000 / messages;
+    }
+
+    long batches() {
+        return batches;
+    }
+}
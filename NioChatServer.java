@@ -0,0 +1,431 @@
+package Chatroom;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+// --- [NIO 서버 엔진] ---
+// 블로킹 엔진은 접속자 1명마다 스레드 1개가 nextLine()에서 멈춰 있어야 해서
+// 스레드 풀(500개)이 꽉 차면 501번째 접속자는 대기열에서 아무 응답도 못 받는다.
+// 이 엔진은 Selector를 이용해서 소수의 이벤트 루프 스레드(기본 : CPU 코어 수)가
+// 수만 개의 연결을 나눠 맡는다. 대부분 가만히 있는 채팅 접속자는 스레드를 차지하지 않는다.
+//
+// 1. 메인 스레드는 ServerSocketChannel.accept()로 연결을 받아 이벤트 루프들에 번갈아(round-robin) 나눠준다.
+// 2. 각 이벤트 루프는 자기 Selector에서 "읽을 게 있는" 연결만 골라 ByteBuffer로 읽고,
+//    WireCodec.Decoder로 명령 단위(텍스트 한 줄 또는 바이너리 프레임)로 잘라서 ClientSession에 넘긴다.
+//    (블로킹 엔진과 같은 프로토콜)
+// 3. 다른 스레드가 보낸 메시지는 연결의 송신 대기열(OutboundQueue)에 쌓이고, 실제 소켓 쓰기는 담당 이벤트 루프가 한다.
+// 4. TLS를 켜면 연결마다 SSLEngine을 하나 두고, 소켓과 위의 읽기/쓰기 사이에서 암호화/복호화만 끼워 넣는다.
+//    (소켓 <-> netIn/netOut (암호문) <-> SSLEngine <-> readBuffer / 송신 Frame (평문))
+class NioChatServer {
+    private static final int READ_BUFFER_SIZE = 4096;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final long LINGER_MS = 2000; // 연결을 끝낼 때 남은 메시지를 마저 보내는 최대 시간 (블로킹 엔진과 같다)
+
+    private final int port;
+    private final EventLoop[] loops;
+
+    NioChatServer(int port, int loopCount, SSLContext tls) throws IOException {
+        this.port = port;
+        this.loops = new EventLoop[Math.max(1, loopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(tls);
+        }
+    }
+
+    void run() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            Thread t = new Thread(loops[i], "nio-loop-" + i);
+            t.start();
+        }
+
+        try (ServerSocketChannel listener = ServerSocketChannel.open()) {
+            listener.bind(new InetSocketAddress(port));
+            ChatServer.shutdown.setListener(listener);
+            int next = 0;
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = listener.accept(); // 여기서는 블로킹으로 기다린다. (메인 스레드 1개뿐)
+                } catch (ClosedChannelException e) {
+                    if (ChatServer.shutdown.isStopping()) return; // 정상 종료 중이라 listener를 닫았다.
+                    throw e;
+                }
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            }
+        }
+    }
+
+    // --- [이벤트 루프] ---
+    // Selector 1개와 스레드 1개. 다른 스레드에서 온 작업(새 연결 등록, 송신 요청)은
+    // tasks 큐에 넣고 selector.wakeup()으로 깨워서 이 스레드가 직접 처리하게 한다.
+    private static class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final SSLContext tls; // null이면 평문
+
+        EventLoop(SSLContext tls) throws IOException {
+            this.selector = Selector.open();
+            this.tls = tls;
+        }
+
+        void register(SocketChannel channel) {
+            execute(() -> {
+                try {
+                    // 실패할 수 있는 일(TLS 엔진, Selector 등록)을 먼저 한다. Connection을 만들면 접속자 수와
+                    // 응답 없음 감시가 시작되므로, 그 뒤에는 실패해서 되돌릴 일이 없게 한다.
+                    SSLEngine engine = tls != null ? newEngine(tls) : null;
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    Connection conn = new Connection(this, channel, key, engine);
+                    key.attach(conn);
+                    conn.session.start();
+                } catch (IOException e) {
+                    System.out.println(e);
+                    try { channel.close(); } catch (IOException ignored) {}
+                }
+            });
+        }
+
+        private static SSLEngine newEngine(SSLContext tls) throws SSLException {
+            SSLEngine engine = tls.createSSLEngine();
+            engine.setUseClientMode(false);
+            engine.setEnabledProtocols(TlsSupport.protocols());
+            engine.beginHandshake();
+            return engine;
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        Connection conn = (Connection) key.attachment();
+                        if (!key.isValid()) {
+                            conn.abort();
+                            continue;
+                        }
+                        if (key.isReadable()) conn.onReadable();
+                        if (key.isValid() && key.isWritable()) conn.flush();
+                    }
+                } catch (Exception e) {
+                    // 연결 하나의 문제로 이벤트 루프 전체가 죽으면 안 된다.
+                    System.out.println(e);
+                }
+            }
+        }
+    }
+
+    // --- [연결 1개] ---
+    // 소켓 채널, 읽기 버퍼, 명령 조립기(Decoder), 송신 대기열, 그리고 프로토콜 상태(ClientSession)를 가진다.
+    private static class Connection {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+
+        private final ByteBuffer readBuffer;
+        private final WireCodec.Decoder decoder = new WireCodec.Decoder(true);
+
+        private final OutboundQueue queue;
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final List<Frame> batch = new ArrayList<>();
+        private ByteBuffer[] writing; // 소켓 버퍼가 꽉 차서 아직 다 못 쓴 나머지
+        private int writingIndex;
+        private Frame.Wire wire = Frame.Wire.TEXT; // Frame.PROTO_OK(_DEFLATE)를 쓴 다음부터 바이너리(압축)로 보낸다.
+
+        // TLS (평문이면 셋 다 null)
+        private final SSLEngine tls;
+        private final ByteBuffer netIn;  // 소켓에서 읽은 암호문 (쓰기 모드)
+        private final ByteBuffer netOut; // 소켓에 쓸 암호문 (읽기 모드, 남은 것이 있으면 그것부터 쓴다)
+        private boolean inputBlocked;    // 복호화할 자리가 readBuffer에 없어서 netIn에 남겨 두었다.
+
+        private final ClientSession session;
+        private final IdleReaper.Watch watch;
+        private boolean closing;         // 세션을 끝냈다. 더 읽지 않고 남은 메시지만 보낸다.
+        private volatile boolean closed; // 소켓까지 닫았다.
+
+        Connection(EventLoop loop, SocketChannel channel, SelectionKey key, SSLEngine tls) {
+            this.loop = loop;
+            this.channel = channel;
+            this.key = key;
+            this.tls = tls;
+            if (tls != null) {
+                // 복호화된 TLS 레코드 하나(최대 16KB)가 통째로 들어갈 수 있어야 한다.
+                this.readBuffer = ByteBuffer.allocate(Math.max(READ_BUFFER_SIZE, tls.getSession().getApplicationBufferSize()));
+                this.netIn = ByteBuffer.allocate(tls.getSession().getPacketBufferSize());
+                this.netOut = ByteBuffer.allocate(tls.getSession().getPacketBufferSize()).flip();
+            } else {
+                this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+                this.netIn = null;
+                this.netOut = null;
+            }
+            // 대기열이 비어 있다가 메시지가 들어오면 이벤트 루프에 쓰기를 예약하고,
+            // 넘쳐서 끊어야 하면 이벤트 루프에서 연결을 닫는다.
+            this.queue = new OutboundQueue(this::scheduleFlush, () -> loop.execute(this::close));
+            // 인증 결과 처리는 이 연결을 맡은 이벤트 루프에서 돌게 한다.
+            this.session = new ClientSession(queue, loop::execute);
+            // 응답 없는 연결은 reaper(tick 스레드)가 이벤트 루프에 close를 맡긴다.
+            this.watch = ChatServer.reaper.watch(session, () -> loop.execute(this::close));
+            ServerMetrics.connections.increment();
+        }
+
+        // 읽을 데이터가 도착했을 때 (이벤트 루프 스레드)
+        void onReadable() {
+            int n;
+            try {
+                n = channel.read(tls != null ? netIn : readBuffer);
+            } catch (IOException e) {
+                abort();
+                return;
+            }
+            if (n < 0) { // 상대방이 보내기를 끝냈다. (받는 쪽은 열려 있을 수 있으므로 남은 메시지는 보낸다)
+                close();
+                return;
+            }
+            watch.touch();
+
+            onInput();
+        }
+
+        // TLS면 받은 암호문을 readBuffer에 풀어 놓고 명령을 처리한다.
+        // readBuffer가 가득 차서 다 못 풀었으면, 명령을 처리해서 자리가 난 뒤에 마저 푼다.
+        private void onInput() {
+            do {
+                if (tls != null && !unwrap()) return;
+                processInput();
+            } while (inputBlocked && !closing && !session.hasPending());
+        }
+
+        // netIn의 TLS 레코드를 풀 수 있는 만큼 readBuffer로 푼다. 연결을 닫았으면 false.
+        // 핸드셰이크 중이면 서버가 보낼 차례(NEED_WRAP)가 될 때마다 flush()가 핸드셰이크 메시지를 보낸다.
+        private boolean unwrap() {
+            inputBlocked = false;
+            netIn.flip();
+            try {
+                while (netIn.hasRemaining()) {
+                    SSLEngineResult r = tls.unwrap(netIn, readBuffer);
+                    runDelegatedTasks();
+                    if (r.getStatus() == SSLEngineResult.Status.CLOSED) {
+                        close();
+                        return false;
+                    }
+                    if (r.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                        inputBlocked = true;
+                        break;
+                    }
+                    if (tls.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP
+                            || r.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+                        flush(); // 핸드셰이크 응답 (끝났으면 기다리던 SUBMITNAME 등도 같이 나간다)
+                        if (closing) return false;
+                    }
+                    if (r.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) break; // 레코드가 덜 왔다.
+                    if (r.bytesConsumed() == 0 && r.bytesProduced() == 0) break;
+                }
+            } catch (SSLException e) {
+                abort();
+                return false;
+            } finally {
+                netIn.compact();
+            }
+            return true;
+        }
+
+        // 인증서 서명 확인 같은 무거운 계산. 이벤트 루프에서 바로 돌린다. (연결마다 처음 한 번, 재개 때는 가볍다)
+        private void runDelegatedTasks() {
+            Runnable task;
+            while ((task = tls.getDelegatedTask()) != null) {
+                task.run();
+            }
+        }
+
+        // readBuffer에 쌓인 바이트를 명령 단위로 잘라서 처리한다.
+        // 인증 작업을 기다려야 하는 명령을 만나면 거기서 멈추고, 나머지 바이트는 버퍼에 남겨 둔다.
+        private void processInput() {
+            readBuffer.flip();
+            try {
+                while (decoder.next(readBuffer)) {
+                    if (!session.handle(decoder.op, decoder.args)) { // /quit
+                        close();
+                        return;
+                    }
+                    if (session.hasPending()) {
+                        suspendReading();
+                        break;
+                    }
+                }
+            } catch (ProtocolException e) {
+                System.out.println(e);
+                close();
+                return;
+            }
+            readBuffer.compact();
+        }
+
+        // 인증 결과가 나올 때까지 이 연결에서는 더 읽지 않는다. (다른 연결들은 계속 돈다)
+        // 결과 처리는 이 이벤트 루프에서 실행되므로 resumeReading도 같은 스레드에서 불린다.
+        private void suspendReading() {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            session.pending().whenComplete((v, e) -> resumeReading());
+        }
+
+        private void resumeReading() {
+            if (closing) return;
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            onInput(); // 기다리는 동안 버퍼에 남아 있던 줄부터 처리한다.
+        }
+
+        // 아무 스레드에서나 불릴 수 있다. 실제 쓰기는 이벤트 루프에게 맡긴다.
+        private void scheduleFlush() {
+            if (closed) return;
+            if (flushScheduled.compareAndSet(false, true)) {
+                loop.execute(this::flush);
+            }
+        }
+
+        // 송신 대기열을 소켓에 최대한 써 넣는다. (이벤트 루프 스레드)
+        // 쌓여 있는 Frame들을 한 번에 꺼내 gathering write로 쓴다. Frame의 바이트는 복사하지 않고
+        // 접속자별 뷰(ByteBuffer)만 만들어서 그대로 소켓에 넘긴다.
+        // 소켓 버퍼가 가득 차서 다 못 쓰면 OP_WRITE를 켜 두고, 쓸 수 있게 되면 다시 불린다.
+        void flush() {
+            flushScheduled.set(false);
+            if (closed) return;
+            try {
+                while (true) {
+                    if (writing == null) {
+                        if (queue.drainTo(batch) == 0) break;
+                        writing = new ByteBuffer[batch.size()];
+                        for (int i = 0; i < writing.length; i++) {
+                            Frame frame = batch.get(i);
+                            writing[i] = frame.buffer(wire);
+                            wire = frame.next(wire);
+                        }
+                        writingIndex = 0;
+                        ServerMetrics.messagesOut.add(writing.length);
+                        batch.clear();
+                    }
+                    if (tls != null) {
+                        if (!flushTls()) return; // 소켓이 가득 찼다.
+                        if (writing != null) break; // 핸드셰이크가 끝나면 unwrap()이 다시 부른다.
+                        continue;
+                    }
+                    ServerMetrics.bytesWritten.add(channel.write(writing, writingIndex, writing.length - writingIndex));
+                    while (writingIndex < writing.length && !writing[writingIndex].hasRemaining()) {
+                        writingIndex++;
+                    }
+                    if (writingIndex < writing.length) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    writing = null;
+                }
+                // TLS : 보낼 평문은 없어도 핸드셰이크 메시지는 보내야 할 수 있다.
+                if (tls != null && !flushTls()) return;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (closing) closeChannel(); // 끝내는 중이었다면 이제 다 보냈다.
+            } catch (IOException e) {
+                abort();
+            }
+        }
+
+        // TLS 쓰기 : 남은 암호문을 먼저 쓰고, writing(평문, 없으면 핸드셰이크)을 레코드로 암호화해서 쓴다.
+        // 소켓이 가득 차서 다 못 썼으면 OP_WRITE를 켜고 false. 더 할 일이 없으면(평문을 다 썼거나 상대 차례) true.
+        private boolean flushTls() throws IOException {
+            while (true) {
+                if (netOut.hasRemaining()) {
+                    ServerMetrics.bytesWritten.add(channel.write(netOut));
+                    if (netOut.hasRemaining()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return false;
+                    }
+                }
+                boolean handshake = tls.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP;
+                if (writing == null && !handshake) return true;
+                netOut.clear();
+                SSLEngineResult r = writing != null
+                        ? tls.wrap(writing, writingIndex, writing.length - writingIndex, netOut)
+                        : tls.wrap(EMPTY, netOut);
+                netOut.flip();
+                runDelegatedTasks();
+                if (r.getStatus() == SSLEngineResult.Status.CLOSED) throw new IOException("TLS 연결이 닫혔습니다.");
+                if (writing != null) {
+                    while (writingIndex < writing.length && !writing[writingIndex].hasRemaining()) {
+                        writingIndex++;
+                    }
+                    if (writingIndex == writing.length) writing = null;
+                }
+                // 핸드셰이크가 끝나지 않아 평문을 아직 못 싣는다. 상대의 다음 메시지(unwrap)를 기다린다.
+                if (r.bytesProduced() == 0 && r.bytesConsumed() == 0) return true;
+            }
+        }
+
+        // 연결을 끝낸다. (/quit, 대기열 넘침, 응답 없음 등) 명단에서는 바로 빠지고 더 읽지 않는다.
+        // 대기열에 남은 메시지(/quit 인사, 속도 제한으로 끊는다는 안내 등)는 블로킹 엔진처럼
+        // 최대 LINGER_MS 동안 마저 보낸 뒤 소켓을 닫는다. 이벤트 루프는 기다리지 않는다.
+        void close() {
+            if (closing) return;
+            closing = true;
+            watch.cancel();
+            session.close(); // 명단에서 지우고 퇴장 공지
+            queue.close();
+            if (closed) return; // abort()에서 왔다.
+            if (!key.isValid()) {
+                closeChannel();
+                return;
+            }
+            key.interestOps(0);
+            flush(); // 다 쓰면 flush가 소켓을 닫는다.
+            if (!closed) {
+                CompletableFuture.delayedExecutor(LINGER_MS, TimeUnit.MILLISECONDS, loop::execute).execute(this::closeChannel);
+            }
+        }
+
+        // 소켓 오류 : 더 보낼 수 없으므로 바로 닫고 세션을 끝낸다.
+        private void abort() {
+            closeChannel();
+            close();
+        }
+
+        private void closeChannel() {
+            if (closed) return;
+            closed = true;
+            ServerMetrics.connections.decrement();
+            key.cancel();
+            try { channel.close(); } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package Chatroom;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// --- [접속자별 송신 대기열] ---
+// 예전에는 broadcast가 전역 락을 잡은 채로 모든 접속자의 소켓에 직접 println을 했기 때문에
+// TCP 창이 꽉 찬 느린 접속자 한 명이 방 전체의 송신을 멈춰 세웠다.
+// 이제 접속자마다 크기가 정해진 대기열을 하나씩 갖고, 보내는 쪽은 여기에 넣기(enqueue)만 한다.
+// 실제 소켓 쓰기는 그 접속자 전용 writer(블로킹 엔진 : writer 스레드, NIO 엔진 : 이벤트 루프)가 한다.
+// 대기열에는 이미 인코딩된 Frame이 들어가므로, broadcast는 Frame 하나를 모든 대기열에 나눠 넣기만 하면 된다.
+//
+// 대기열이 가득 찼을 때의 정책 (-Dchat.outbound.overflow)
+//    - drop_oldest (기본값) : 가장 오래된 메시지를 버리고 새 메시지를 넣는다.
+//    - disconnect           : 못 따라오는 접속자(slow consumer)의 연결을 끊는다.
+class OutboundQueue {
+
+    enum OverflowPolicy { DROP_OLDEST, DISCONNECT }
+
+    static final int CAPACITY = Integer.getInteger("chat.outbound.capacity", 1024);
+    static final OverflowPolicy POLICY =
+            OverflowPolicy.valueOf(System.getProperty("chat.outbound.overflow", "drop_oldest").toUpperCase());
+
+    // 서버 전체 통계 (여러 스레드가 동시에 더하므로 LongAdder)
+    static final LongAdder droppedMessages = new LongAdder();
+    static final LongAdder slowConsumerDisconnects = new LongAdder();
+
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock(); // 이 접속자 한 명만을 위한 락
+    private final Condition notEmpty = lock.newCondition();
+    private final Runnable onReady;    // 비어 있다가 메시지가 들어왔을 때 (NIO : 쓰기 예약)
+    private final Runnable onOverflow; // disconnect 정책으로 끊어야 할 때 (서버가 끊을 때도 쓴다)
+    private boolean closed;
+    private long dropped;
+
+    OutboundQueue(Runnable onReady, Runnable onOverflow) {
+        this.onReady = onReady;
+        this.onOverflow = onOverflow;
+    }
+
+    // 아무 스레드에서나 호출할 수 있다. 소켓에 쓰지 않으므로 절대 오래 막히지 않는다.
+    void send(String line) {
+        send(Frame.of(line));
+    }
+
+    void send(Frame frame) {
+        boolean wasEmpty = false;
+        boolean disconnect = false;
+        lock.lock();
+        try {
+            if (closed) return;
+            if (queue.size() >= CAPACITY) {
+                droppedMessages.increment();
+                dropped++;
+                if (POLICY == OverflowPolicy.DISCONNECT) {
+                    closed = true;
+                    queue.clear();
+                    notEmpty.signalAll();
+                    slowConsumerDisconnects.increment();
+                    disconnect = true;
+                } else {
+                    queue.pollFirst(); // 가장 오래된 것을 버린다.
+                }
+            }
+            if (!disconnect) {
+                wasEmpty = queue.isEmpty();
+                queue.addLast(frame);
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        // 콜백은 락 밖에서 부른다. (다른 스레드에 작업을 넘기거나 소켓을 닫는 일이라서)
+        if (disconnect) {
+            if (onOverflow != null) onOverflow.run();
+        } else if (wasEmpty && onReady != null) {
+            onReady.run();
+        }
+    }
+
+    // 블로킹 writer용 : 메시지가 하나라도 생길 때까지 기다렸다가 쌓인 것을 한꺼번에 꺼낸다.
+    // 대기열이 닫혔고 남은 것도 없으면 false를 반환한다.
+    boolean awaitAndDrainTo(Collection<Frame> batch) throws InterruptedException {
+        lock.lock();
+        try {
+            while (queue.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            if (queue.isEmpty()) return false;
+            batch.addAll(queue);
+            queue.clear();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // NIO용 : 기다리지 않고 지금 쌓여 있는 것만 꺼낸다.
+    int drainTo(Collection<Frame> batch) {
+        lock.lock();
+        try {
+            int n = queue.size();
+            batch.addAll(queue);
+            queue.clear();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 더 이상 받지 않는다. 이미 쌓인 메시지는 writer가 마저 보낸다.
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 서버 쪽에서 이 연결을 끊는다. (같은 ID가 토큰으로 다시 들어와서 남아 있던 연결을 밀어낼 때)
+    // 엔진의 끊는 방법(onOverflow)을 그대로 쓰므로, 엔진이 연결을 닫고 ClientSession.close()를 부른다.
+    void disconnect() {
+        close();
+        if (onOverflow != null) onOverflow.run();
+    }
+
+    // 아직 writer가 꺼내 가지 않은 메시지 수 (정상 종료 때 다 나갔는지 볼 때 쓴다)
+    int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package Chatroom;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+// --- [가상 스레드 Pinning 리포트] ---
+// 가상 스레드가 synchronized 블록이나 native 호출 안에서 블로킹되면 캐리어 스레드에 고정(pinning)되어
+// 다른 가상 스레드들이 그 캐리어를 못 쓰게 된다. 부하 상황에서 이런 일이 어디서 얼마나 생기는지
+// JFR(Java Flight Recorder)의 jdk.VirtualThreadPinned 이벤트를 구독해서 위치별로 세고,
+// 주기적으로(그리고 서버 종료 시) 콘솔에 요약을 찍는다.
+// 스택 전체가 필요하면 -Djdk.tracePinnedThreads=full 옵션을 함께 쓰면 된다.
+class PinningMonitor {
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+
+    private static final Map<String, LongAdder> countsBySite = new ConcurrentHashMap<>();
+    private static final LongAdder total = new LongAdder();
+
+    private PinningMonitor() {
+    }
+
+    static void start() {
+        long thresholdMs = Long.getLong("chat.pinning.thresholdMs", 20);
+        long reportSeconds = Long.getLong("chat.pinning.reportSeconds", 30);
+        try {
+            RecordingStream rs = new RecordingStream();
+            rs.enable(EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+            rs.onEvent(EVENT, PinningMonitor::record);
+            rs.startAsync();
+        } catch (Exception e) {
+            // JFR을 쓸 수 없는 환경이면 리포트만 포기하고 서버는 계속 돈다.
+            System.out.println("[pinning] JFR을 시작할 수 없습니다: " + e);
+            return;
+        }
+
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pinning-report");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(PinningMonitor::report, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(PinningMonitor::report));
+        System.out.println("[pinning] " + thresholdMs + "ms 이상 고정된 가상 스레드를 " + reportSeconds + "초마다 보고합니다.");
+    }
+
+    private static void record(RecordedEvent event) {
+        total.increment();
+        countsBySite.computeIfAbsent(siteOf(event), k -> new LongAdder()).increment();
+    }
+
+    // pinning 위치 : 스택에서 처음 나오는 Chatroom 코드 프레임 (없으면 맨 위 프레임)
+    private static String siteOf(RecordedEvent event) {
+        RecordedStackTrace stack = event.getStackTrace();
+        if (stack == null || stack.getFrames().isEmpty()) return "(unknown)";
+        for (RecordedFrame frame : stack.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("Chatroom.")) return format(frame);
+        }
+        return format(stack.getFrames().get(0));
+    }
+
+    private static String format(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    static void report() {
+        long sum = total.sum();
+        if (sum == 0) return;
+        List<Map.Entry<String, LongAdder>> sites = new ArrayList<>(countsBySite.entrySet());
+        sites.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+        StringBuilder sb = new StringBuilder("[pinning] 누적 " + sum + "건");
+        for (Map.Entry<String, LongAdder> site : sites) {
+            sb.append("\n    ").append(site.getValue().sum()).append("  ").append(site.getKey());
+        }
+        System.out.println(sb);
+    }
+}
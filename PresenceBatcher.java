@@ -0,0 +1,105 @@
+package Chatroom;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// --- [입장/퇴장 알림 묶음 처리] ---
+// 네트워크가 잠깐 끊겼다가 200명이 한꺼번에 다시 들어오면, 예전에는 입장 공지와 명단 변경이
+// 각각 200번씩 모든 사람에게 나갔다. 이제 짧은 시간(-Dchat.presence.windowMs, 기본 100ms) 동안의
+// 입장/퇴장을 모아 두었다가, 구간이 끝나면 접속자마다 딱 하나의 Frame으로 보낸다.
+//    - 같은 사람이 구간 안에서 나갔다가 다시 들어오면(또는 그 반대) 서로 상쇄되어 아무것도 보내지 않는다.
+//    - 공지는 "A 님 외 N명이 입장하셨습니다." 처럼 한 줄로 합친다.
+//    - 명단 변경은 /userjoin id1,id2,... 와 /userleave id1,id2,... 로 여러 명을 한 번에 보낸다.
+// windowMs가 0이면 묶지 않고 바로 보낸다.
+// 방(ChatRoom)마다 하나씩 있으며, 모은 알림은 그 방의 멤버들에게만 보낸다. 타이머 스레드는 모든 방이 같이 쓴다.
+class PresenceBatcher {
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "presence-batcher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final long windowMs;
+    private final Consumer<Frame> target; // 모은 알림을 보낼 곳 (방 전체 방송)
+    private final ReentrantLock lock = new ReentrantLock();
+    // 이번 구간의 변화 (ID -> true : 입장, false : 퇴장). 들어온 순서를 지킨다.
+    private Map<String, Boolean> changes = new LinkedHashMap<>();
+    private boolean scheduled;
+
+    PresenceBatcher(long windowMs, Consumer<Frame> target) {
+        this.windowMs = windowMs;
+        this.target = target;
+    }
+
+    void joined(String userID) {
+        record(userID, true);
+    }
+
+    void left(String userID) {
+        record(userID, false);
+    }
+
+    private void record(String userID, boolean join) {
+        boolean flushNow = false;
+        lock.lock();
+        try {
+            Boolean previous = changes.get(userID);
+            if (previous != null && previous != join) {
+                changes.remove(userID); // 구간 안에서 들어왔다 나감 (또는 반대) -> 상쇄
+            } else {
+                changes.put(userID, join);
+            }
+            if (windowMs <= 0) {
+                flushNow = true;
+            } else if (!scheduled) {
+                scheduled = true;
+                TIMER.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (flushNow) flush();
+    }
+
+    // 모아 둔 변화를 하나의 Frame으로 만들어 방의 모든 접속자에게 보낸다.
+    void flush() {
+        Map<String, Boolean> batch;
+        lock.lock();
+        try {
+            batch = changes;
+            changes = new LinkedHashMap<>();
+            scheduled = false;
+        } finally {
+            lock.unlock();
+        }
+        if (batch.isEmpty()) return;
+
+        List<String> joins = new ArrayList<>();
+        List<String> leaves = new ArrayList<>();
+        for (Map.Entry<String, Boolean> e : batch.entrySet()) {
+            (e.getValue() ? joins : leaves).add(e.getKey());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        if (!joins.isEmpty()) sb.append(notice(joins, "입장")).append('\n');
+        if (!leaves.isEmpty()) sb.append(notice(leaves, "퇴장")).append('\n');
+        if (!joins.isEmpty()) sb.append("/userjoin ").append(String.join(",", joins)).append('\n');
+        if (!leaves.isEmpty()) sb.append("/userleave ").append(String.join(",", leaves)).append('\n');
+        sb.setLength(sb.length() - 1); // Frame.of가 마지막 줄바꿈을 붙인다.
+        target.accept(Frame.of(sb.toString()));
+    }
+
+    private static String notice(List<String> users, String action) {
+        if (users.size() == 1) {
+            return "MESSAGE [공지] " + users.get(0) + " 님이 " + action + "하셨습니다.";
+        }
+        return "MESSAGE [공지] " + users.get(0) + " 님 외 " + (users.size() - 1) + "명이 " + action + "하셨습니다.";
+    }
+}
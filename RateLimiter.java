@@ -0,0 +1,95 @@
+package Chatroom;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// --- [접속자별 전송 속도 제한] ---
+// 클라이언트 한 명이 보낸 채팅 한 줄은 방 인원 N명에게 복사되어 나가므로, 한 명이 쏟아붓기만 해도
+// 서버의 송신량은 N배로 불어난다. 그래서 접속자마다 "통(bucket)"을 두고 정해진 속도 이상은 받지 않는다.
+//    - 방송(일반 채팅, /join, /leave, /rooms)과 귓속말을 따로 센다. 각각 메시지 수 / 바이트 수 통이 하나씩 있다.
+//    - 통이 꽉 차 있으면(한동안 조용했으면) burst 만큼은 한꺼번에 보낼 수 있다.
+//    - 넘쳤을 때 (-Dchat.limit.penalty)
+//        drop       : 조용히 버린다.
+//        warn       : 버리고 "너무 빨리 보내고 있다"고 알려 준다. (1초에 한 번만) (기본값)
+//        disconnect : 연결을 끊는다.
+// 통 하나는 "다음 메시지가 들어올 수 있는 이론상 시각(tat)" long 하나로 표현한다. (GCRA 방식)
+//    메시지 하나가 들어오면 tat를 (1 / 속도)만큼 뒤로 민다. tat가 지금보다 burst 만큼 넘게 앞서 있으면 넘친 것이다.
+// 한 세션의 명령은 항상 한 스레드가 차례로 처리하므로(블로킹 : Handler, NIO : 담당 이벤트 루프) 락이 필요 없다.
+final class RateLimiter {
+
+    enum Penalty { DROP, WARN, DISCONNECT }
+
+    static final Penalty PENALTY = Penalty.valueOf(System.getProperty("chat.limit.penalty", "warn").toUpperCase());
+
+    private static final double CHAT_RATE = Double.parseDouble(System.getProperty("chat.limit.chatRate", "10"));
+    private static final int CHAT_BURST = Integer.getInteger("chat.limit.chatBurst", 20);
+    private static final double CHAT_BYTES = Double.parseDouble(System.getProperty("chat.limit.chatBytes", "16384"));
+    private static final double WHISPER_RATE = Double.parseDouble(System.getProperty("chat.limit.whisperRate", "5"));
+    private static final int WHISPER_BURST = Integer.getInteger("chat.limit.whisperBurst", 10);
+    private static final double WHISPER_BYTES = Double.parseDouble(System.getProperty("chat.limit.whisperBytes", "8192"));
+
+    // 서버 전체에서 제한에 걸린 메시지 수 (ServerMetrics)
+    static final LongAdder limited = new LongAdder();
+
+    private final Bucket chatCount = new Bucket(CHAT_RATE, CHAT_BURST);
+    // 바이트 통의 burst는 2초치이다. (한 줄 최대 길이 chat.wire.maxLine 보다는 커야 긴 줄도 들어온다)
+    private final Bucket chatBytes = new Bucket(CHAT_BYTES, (long) (CHAT_BYTES * 2));
+    private final Bucket whisperCount = new Bucket(WHISPER_RATE, WHISPER_BURST);
+    private final Bucket whisperBytes = new Bucket(WHISPER_BYTES, (long) (WHISPER_BYTES * 2));
+    private long lastWarn;
+
+    // 이 메시지를 받아도 되면 true (두 통 모두에 자리가 있을 때만 둘 다에서 뺀다)
+    boolean allow(boolean whisper, String text) {
+        Bucket count = whisper ? whisperCount : chatCount;
+        Bucket bytes = whisper ? whisperBytes : chatBytes;
+        long now = System.nanoTime();
+        int size = utf8Length(text);
+        if (!count.fits(1, now) || !bytes.fits(size, now)) {
+            limited.increment();
+            return false;
+        }
+        count.take(1, now);
+        bytes.take(size, now);
+        return true;
+    }
+
+    // warn 정책 : 경고 문구는 1초에 한 번만 보낸다. (경고 자체가 또 홍수가 되지 않게)
+    boolean shouldWarn() {
+        long now = System.nanoTime();
+        if (now - lastWarn < 1_000_000_000L && lastWarn != 0) return false;
+        lastWarn = now;
+        return true;
+    }
+
+    // 문자열을 만들지 않고 UTF-8 바이트 수만 센다.
+    static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n++;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c)) { n += 4; i++; }
+            else n += 3;
+        }
+        return n;
+    }
+
+    private static final class Bucket {
+        final long interval;  // 1단위당 간격 (ns)
+        final long tolerance; // burst 만큼의 여유 (ns)
+        long tat;             // 다음 1단위가 들어올 수 있는 이론상 시각
+
+        Bucket(double ratePerSecond, long burst) {
+            this.interval = Math.max(1, (long) (1e9 / ratePerSecond));
+            this.tolerance = interval * Math.max(1, burst);
+            this.tat = Long.MIN_VALUE / 2;
+        }
+
+        boolean fits(long units, long now) {
+            return Math.max(tat, now) + units * interval - now <= tolerance;
+        }
+
+        void take(long units, long now) {
+            tat = Math.max(tat, now) + units * interval;
+        }
+    }
+}
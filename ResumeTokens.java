@@ -0,0 +1,204 @@
+package Chatroom;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// --- [재접속 토큰] ---
+// 서버가 잠깐 끊겼다 살아나면 모든 클라이언트가 한꺼번에 "LOGIN 아이디 비번"을 다시 보내고,
+// 그때마다 비밀번호 해시(SHA-256)를 계산해야 해서 인증 작업자 풀이 밀린다.
+// 그래서 로그인에 성공하면 "LOGIN_SUCCESS 아이디 토큰"으로 서명된 토큰을 같이 주고,
+// 다시 연결한 클라이언트는 "RESUME 토큰"만 보내면 된다.
+//    - 토큰 = base64url(아이디 + "\n" + 만료시각ms + "\n" + 토큰 번호) + "." + base64url(HMAC-SHA256(그 내용))
+//    - 확인 : HMAC 한 번 + 만료 시각 비교 + "이미 쓴 토큰" 표 조회뿐이다. 회원 명부는 보지 않고, 작업자 풀에 넘기지도 않는다.
+//    - 한 번만 쓴다 : RESUME에 성공하면 그 토큰 번호를 "이미 쓴 토큰"으로 적고(spend) LOGIN_SUCCESS로 새 토큰을 준다.
+//      그래서 새어 나간 토큰도 주인이 한 번 다시 접속하면 더는 통하지 않는다. 적은 번호는 resume.spent에도 덧붙여서
+//      서버를 다시 켜도 남고, 클러스터로 묶여 있으면 다른 노드에도 알린다. 만료된 번호는 어차피 통하지 않으므로 지운다.
+//    - 유효 시간 : -Dchat.resume.ttlSeconds (기본 600초). 짧게 두어 토큰이 새어도 오래 쓸 수 없게 한다.
+//    - 서명 키 : -Dchat.resume.secret 이 있으면 그 값, 없으면 resume.key 파일 (없으면 처음 켤 때 무작위로 만든다).
+//      서버를 다시 켜도 키가 같아야 재시작 전에 준 토큰이 통한다. 여러 노드를 묶으면 노드끼리 같은 키를 써야 한다.
+class ResumeTokens {
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final long PRUNE_MS = 60_000;
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+    // Mac은 여러 스레드가 같이 쓸 수 없으므로 스레드마다 하나씩 만들어 재사용한다.
+    private final ThreadLocal<Mac> mac;
+    // 이미 쓴 토큰 : 토큰 번호 -> 만료 시각
+    private final ConcurrentHashMap<String, Long> spent = new ConcurrentHashMap<>();
+    private volatile long nextPrune;
+    private File spentFile;  // null이면 파일에 남기지 않는다. (벤치 등)
+    private Writer spentLog;
+    private int spentLines;  // spentLog에 적힌 줄 수. 지운 번호가 많이 쌓이면 파일을 새로 쓴다.
+
+    ResumeTokens(byte[] secret, long ttlMillis) {
+        this.key = new SecretKeySpec(secret, "HmacSHA256");
+        this.ttlMillis = ttlMillis;
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac m = Mac.getInstance("HmacSHA256");
+                m.init(key);
+                return m;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    long ttlMillis() {
+        return ttlMillis;
+    }
+
+    static ResumeTokens fromSystemProperties() throws IOException {
+        long ttl = Long.getLong("chat.resume.ttlSeconds", 600) * 1000;
+        String secret = System.getProperty("chat.resume.secret");
+        ResumeTokens tokens = new ResumeTokens(secret != null ? secret.getBytes(StandardCharsets.UTF_8)
+                : loadOrCreateKey(new File("resume.key")), ttl);
+        tokens.openSpentLog(new File("resume.spent"));
+        return tokens;
+    }
+
+    // 지난번까지 쓴 토큰 번호를 읽고, 만료되지 않은 것만 남겨서 다시 쓴 뒤 이어서 덧붙인다.
+    // 한 줄 : 토큰번호 만료시각ms
+    private synchronized void openSpentLog(File file) throws IOException {
+        long now = System.currentTimeMillis();
+        if (file.exists()) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    int space = line.indexOf(' ');
+                    if (space <= 0) continue;
+                    try {
+                        long expires = Long.parseLong(line.substring(space + 1).trim());
+                        if (expires >= now) spent.put(line.substring(0, space), expires);
+                    } catch (NumberFormatException e) {
+                        // 쓰다 만 마지막 줄
+                    }
+                }
+            }
+        }
+        spentFile = file;
+        rewriteSpentLog();
+        nextPrune = now + PRUNE_MS;
+    }
+
+    // 지금 표에 남은 번호만 새 파일에 쓴다. (this로 잠그고 부른다)
+    private void rewriteSpentLog() throws IOException {
+        if (spentLog != null) spentLog.close();
+        spentLog = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spentFile), StandardCharsets.UTF_8));
+        spentLines = 0;
+        for (Map.Entry<String, Long> e : spent.entrySet()) {
+            spentLog.write(e.getKey() + " " + e.getValue() + "\n");
+            spentLines++;
+        }
+        spentLog.flush();
+    }
+
+    // 키 파일 : 16진수 한 줄. 없으면 32바이트 무작위 키를 만들어 저장한다. (가능하면 주인만 읽을 수 있게)
+    private static byte[] loadOrCreateKey(File file) throws IOException {
+        if (file.exists()) {
+            return HexFormat.of().parseHex(Files.readString(file.toPath(), StandardCharsets.UTF_8).trim());
+        }
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        Files.writeString(file.toPath(), HexFormat.of().formatHex(secret) + "\n", StandardCharsets.UTF_8);
+        try {
+            Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Windows 등 POSIX 권한이 없는 파일 시스템
+        }
+        return secret;
+    }
+
+    // 로그인에 성공한 사람에게 줄 토큰
+    String issue(String userID) {
+        byte[] id = new byte[12];
+        RANDOM.nextBytes(id);
+        byte[] payload = (userID + "\n" + (System.currentTimeMillis() + ttlMillis) + "\n" + B64.encodeToString(id))
+                .getBytes(StandardCharsets.UTF_8);
+        return B64.encodeToString(payload) + "." + B64.encodeToString(mac.get().doFinal(payload));
+    }
+
+    // 서명이 맞고, 아직 만료되지 않았고, 쓴 적이 없으면 그 토큰의 아이디, 아니면 null
+    String verify(String token) {
+        String[] fields = open(token);
+        return fields != null && !spent.containsKey(fields[2]) ? fields[0] : null;
+    }
+
+    // 토큰을 쓴 것으로 적는다. 이미 누가 썼으면(동시에 두 번 RESUME) false.
+    boolean spend(String token) {
+        String[] fields = open(token);
+        if (fields == null) return false;
+        long expires = Long.parseLong(fields[1]);
+        if (spent.putIfAbsent(fields[2], expires) != null) return false;
+        long now = System.currentTimeMillis();
+        boolean pruned = false;
+        if (now >= nextPrune) {
+            nextPrune = now + PRUNE_MS;
+            pruned = spent.values().removeIf(t -> t < now);
+        }
+        synchronized (this) {
+            if (spentFile != null) {
+                try {
+                    if (pruned && spentLines > 2 * spent.size() + 1024) {
+                        rewriteSpentLog(); // 방금 적은 번호도 표에 있으므로 같이 쓰인다.
+                    } else {
+                        spentLog.write(fields[2] + " " + expires + "\n");
+                        spentLog.flush();
+                        spentLines++;
+                    }
+                } catch (IOException e) {
+                    System.out.println("[resume] resume.spent 기록 실패 : " + e); // 이 서버가 켜져 있는 동안은 메모리의 표로 막는다.
+                }
+            }
+        }
+        return true;
+    }
+
+    // 서명과 만료 시각을 확인하고 {아이디, 만료시각, 토큰 번호}를 돌려준다. 아니면 null
+    private String[] open(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) return null;
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = B64D.decode(token.substring(0, dot));
+            signature = B64D.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null; // base64가 아니다.
+        }
+        // 비교 시간이 내용에 따라 달라지지 않도록 MessageDigest.isEqual로 비교한다.
+        if (!MessageDigest.isEqual(mac.get().doFinal(payload), signature)) return null;
+        String[] fields = new String(payload, StandardCharsets.UTF_8).split("\n", -1);
+        if (fields.length != 3 || fields[0].isEmpty()) return null;
+        try {
+            if (Long.parseLong(fields[1]) < System.currentTimeMillis()) return null; // 만료
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return fields;
+    }
+}
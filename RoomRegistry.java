@@ -0,0 +1,71 @@
+package Chatroom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// --- [채팅방 목록] ---
+// 방 이름 -> ChatRoom. 로그인하면 기본 방(lobby)에 들어가고, /join으로 다른 방으로 옮긴다.
+// 방은 처음 누군가 들어갈 때 만들어지고, 마지막 사람이 나가면 없어진다. (lobby는 항상 남는다)
+// 만들기/들어가기, 나가기/없애기는 ConcurrentHashMap.compute로 방 이름 단위로 원자적으로 처리하므로
+// "방이 막 지워지는 순간에 누가 들어가서 사라진 방에 갇히는" 일이 생기지 않는다.
+class RoomRegistry {
+    static final String LOBBY = "lobby";
+
+    private final ConcurrentHashMap<String, ChatRoom> rooms = new ConcurrentHashMap<>();
+    private final long presenceWindowMs;
+
+    RoomRegistry(long presenceWindowMs) {
+        this.presenceWindowMs = presenceWindowMs;
+        rooms.put(LOBBY, new ChatRoom(LOBBY, presenceWindowMs));
+    }
+
+    // 방 이름 규칙 : 공백(탭 포함)/제어 문자/콤마 없이 1~20자
+    // 방 이름은 대화 기록(MessageLog)과 클러스터 메시지에 탭으로 구분해 들어가므로 탭/줄바꿈이 섞이면 안 된다.
+    static boolean isValidName(String roomName) {
+        if (roomName.length() < 1 || roomName.length() > 20) return false;
+        for (int i = 0; i < roomName.length(); i++) {
+            char c = roomName.charAt(i);
+            if (c == ',' || Character.isWhitespace(c) || Character.isSpaceChar(c) || Character.isISOControl(c)) return false;
+        }
+        return true;
+    }
+
+    // 지금 있는 방 (없으면 null)
+    ChatRoom get(String roomName) {
+        return rooms.get(roomName);
+    }
+
+    // 방에 들어간다. 방이 없으면 만든다.
+    ChatRoom enter(String roomName, ClientSession session) {
+        return rooms.compute(roomName, (k, room) -> {
+            if (room == null) room = new ChatRoom(k, presenceWindowMs);
+            room.add(session);
+            return room;
+        });
+    }
+
+    // 방에서 나간다. 마지막 사람이었으면 방을 없앤다.
+    void exit(ChatRoom room, ClientSession session) {
+        rooms.computeIfPresent(room.name, (k, r) -> {
+            r.remove(session);
+            return r.isEmpty() && !k.equals(LOBBY) ? null : r;
+        });
+    }
+
+    // /rooms 응답용 : "lobby(3), dev(2)". 클러스터로 묶여 있으면 다른 노드의 인원도 더한다.
+    String describe() {
+        Map<String, Integer> sizes = new TreeMap<>();
+        for (ChatRoom room : rooms.values()) {
+            sizes.merge(room.name, room.size(), Integer::sum);
+        }
+        if (ChatServer.cluster != null) {
+            ChatServer.cluster.remoteRoomSizes().forEach((name, n) -> sizes.merge(name, n, Integer::sum));
+        }
+        List<String> names = new ArrayList<>();
+        sizes.forEach((name, n) -> names.add(name + "(" + n + ")"));
+        return String.join(", ", names);
+    }
+}
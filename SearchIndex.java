@@ -0,0 +1,616 @@
+package Chatroom;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// --- [대화 검색 색인 (/search)] ---
+// 대화 기록(MessageLog)은 시간순으로 덧붙이기만 하는 파일이라서, 단어 하나를 찾으려면 전부 읽어야 한다.
+// 그래서 기록을 쓰는 전용 스레드가 메시지를 쓸 때마다 역색인(inverted index)에도 넣는다.
+//    단어(term) -> 그 단어가 나온 메시지 번호들 (posting list, 오름차순 int 배열)
+// 색인은 segment 단위로 나뉜다.
+//    - 메모리 segment : 지금 채우는 중인 것. 단어마다 int[] 하나 (박싱된 Integer 리스트가 아니다).
+//    - 디스크 segment : 메모리 segment가 -Dchat.search.segmentDocs 개(기본 50,000)가 되면 파일 하나로 내려 쓰고(spill)
+//                      메모리에서 비운다. 메모리에는 단어 사전(정렬된 String[] + int[])만 남기고,
+//                      posting list와 메시지 본문은 찾을 때 필요한 부분만 파일에서 읽는다.
+//      전체 메시지 수가 -Dchat.search.maxDocs (기본 2,000,000)를 넘으면 가장 오래된 segment 파일부터 지운다. (그 파일을 읽는 중인 검색이 있으면 끝난 뒤에)
+// 찾을 때는 최신 segment부터 거꾸로, 단어들의 posting list 교집합만 본다. 결과가 다 차면 더 오래된 segment는 열지도 않는다.
+//
+// 단어 나누기 : 글자/숫자가 이어진 덩어리를 소문자로. 한글처럼 조사가 붙는 말("회의는")은 덩어리 대신
+// 두 글자씩(bigram) 넣는다. 그래서 "회의"로 "회의는"을 찾을 수 있다. bigram이 모두 있어도 붙어 있지 않을 수 있으므로
+// 마지막에 본문에 검색어가 그대로 들어 있는지 한 번 더 확인한다. 한 글자 검색어("회")와 섞인 단어의 ASCII 부분
+// ("abc회의"의 "abc")으로도 찾을 수 있도록 그런 단어는 글자 하나씩과 ASCII 부분도 같이 넣는다. (addTerms)
+//
+// 서버가 정상 종료하면 메모리 segment도 파일로 내려 쓴다. 갑자기 죽어서 못 내려 쓴 메시지는
+// 다음 시작 때 MessageLog가 마지막으로 색인한 기록 위치(LogPosition) 뒤부터 다시 읽어서 채운다. (MessageLog.indexTo)
+// 시각(ms)은 같은 값이 여러 줄에 나올 수 있고 기록 순서대로 늘어난다는 보장도 없어서 기준으로 쓰지 않는다.
+// 파일 한 개 형식 : [posting lists][메시지들][메시지 위치표 long[n+1]][단어 사전][꼬리 (개수, 기록 위치, 위치, MAGIC)]
+final class SearchIndex {
+    private static final String SUFFIX = ".idx";
+    private static final int MAGIC = 0x43534932; // "CSI2"
+    private static final int TAIL = 4 + 4 + 4 + 8 + 8 + 8 + 4;
+    static final int MAX_WORDS = 8;  // 검색어 최대 개수
+    static final int MAX_TERM = 64;  // 이보다 긴 단어는 앞부분만 색인한다. (본문 확인은 전체로 한다)
+    static final int MAX_RESULTS = Integer.getInteger("chat.search.maxResults", 20);
+
+    // 서버 전체 통계 (ServerMetrics)
+    static final LongAdder rejected = new LongAdder();
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    private final File dir;
+    private final int segmentDocs;
+    private final long maxDocs;
+    private final ThreadPoolExecutor workers;
+
+    // 아래 셋은 this로 잠그고 바꾼다. add()는 기록 스레드만 부른다.
+    private MemorySegment active = new MemorySegment();
+    private MemorySegment spilling; // 파일로 쓰는 중인 것 (다 쓸 때까지는 이것으로 찾는다)
+    private DiskSegment[] disk = new DiskSegment[0]; // 오래된 순서
+    private int fileIndex;
+
+    // 찾은 메시지 하나
+    static final class Hit {
+        final long time;
+        final String room;
+        final String line;
+
+        Hit(long time, String room, String line) {
+            this.time = time;
+            this.room = room;
+            this.line = line;
+        }
+
+        // 앞의 "MESSAGE "를 뺀 본문 ("alice: 안녕")
+        String text() {
+            return body(line);
+        }
+    }
+
+    // 대화 기록(MessageLog)에서의 위치 : segment 파일 번호와 그 파일 안의 바이트 위치.
+    // 메시지마다 그 줄이 끝난 바로 뒤의 위치를 같이 넣어 두고, 다시 켤 때 그 뒤부터 읽는다.
+    static final class LogPosition {
+        static final LogPosition START = new LogPosition(0, 0);
+
+        final int segment;
+        final long offset;
+
+        LogPosition(int segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    private SearchIndex(File dir, int segmentDocs, long maxDocs, int threads, int queueCapacity) {
+        this.dir = dir;
+        this.segmentDocs = Math.max(1, segmentDocs);
+        this.maxDocs = maxDocs;
+        AtomicInteger seq = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "search-" + seq.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // dir 안에 남아 있는 segment 파일들의 단어 사전을 읽어 둔다.
+    static SearchIndex open(File dir) throws IOException {
+        SearchIndex index = new SearchIndex(dir,
+                Integer.getInteger("chat.search.segmentDocs", 50_000),
+                Long.getLong("chat.search.maxDocs", 2_000_000),
+                Integer.getInteger("chat.search.threads", 2),
+                Integer.getInteger("chat.search.queue", 64));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("검색 색인 폴더를 만들 수 없습니다 : " + dir);
+        }
+        String[] names = dir.list((d, name) -> name.matches("\\d{8}\\" + SUFFIX));
+        if (names == null) names = new String[0];
+        Arrays.sort(names);
+        List<DiskSegment> loaded = new ArrayList<>();
+        for (String name : names) {
+            File f = new File(dir, name);
+            try {
+                loaded.add(DiskSegment.open(f));
+            } catch (IOException e) {
+                System.out.println("[search] 색인 파일이 깨져서 건너뜁니다 : " + f + " (" + e.getMessage() + ")");
+            }
+            index.fileIndex = Integer.parseInt(name.substring(0, 8));
+        }
+        index.disk = loaded.toArray(new DiskSegment[0]);
+        return index;
+    }
+
+    // 색인된 메시지 수 (ServerMetrics)
+    synchronized long size() {
+        long n = active.size + (spilling != null ? spilling.size : 0);
+        for (DiskSegment s : disk) {
+            n += s.docCount;
+        }
+        return n;
+    }
+
+    // 가장 최근에 색인한 메시지가 끝난 기록 위치. 시작할 때 MessageLog가 이 뒤의 기록만 다시 넣는다.
+    // 기록 스레드가 기록 순서대로 넣으므로 가장 나중에 넣은 것이 가장 뒤의 위치다.
+    synchronized LogPosition logPosition() {
+        if (active.size > 0) return active.logPosition;
+        if (spilling != null) return spilling.logPosition;
+        return disk.length > 0 ? disk[disk.length - 1].logPosition : LogPosition.START;
+    }
+
+    // --- [색인에 넣기 : 기록 스레드] ---
+    // end : 이 줄이 대화 기록에서 끝난 위치
+    void add(long time, String room, String line, LogPosition end) throws IOException {
+        MemorySegment full = null;
+        synchronized (this) {
+            active.add(time, room, line, end);
+            if (active.size >= segmentDocs) {
+                full = active;
+                spilling = full;
+                active = new MemorySegment();
+            }
+        }
+        if (full != null) spill(full);
+    }
+
+    // 서버를 끌 때 (기록 스레드) : 메모리 segment를 파일로 내려 쓴다.
+    void close() throws IOException {
+        MemorySegment last;
+        synchronized (this) {
+            if (active.size == 0) return;
+            last = active;
+            spilling = last;
+            active = new MemorySegment();
+        }
+        spill(last);
+    }
+
+    private void spill(MemorySegment segment) throws IOException {
+        DiskSegment written = null;
+        try {
+            written = DiskSegment.write(new File(dir, String.format("%08d", ++fileIndex) + SUFFIX), segment);
+        } finally {
+            List<DiskSegment> expired = new ArrayList<>();
+            synchronized (this) {
+                spilling = null; // 못 썼으면 이 segment는 색인에서 빠진다. (기록 파일에는 남아 있다)
+                if (written != null) {
+                    DiskSegment[] next = Arrays.copyOf(disk, disk.length + 1);
+                    next[disk.length] = written;
+                    long total = 0;
+                    for (DiskSegment s : next) {
+                        total += s.docCount;
+                    }
+                    int drop = 0;
+                    while (next.length - drop > 1 && total > maxDocs) {
+                        total -= next[drop].docCount;
+                        expired.add(next[drop++]);
+                    }
+                    disk = Arrays.copyOfRange(next, drop, next.length);
+                }
+            }
+            for (DiskSegment s : expired) {
+                s.release(); // 지금 이 segment를 읽는 검색이 있으면 그 검색이 끝날 때 닫고 지운다.
+            }
+        }
+    }
+
+    // --- [찾기] ---
+    // 작업자 풀에서 찾는다. (NIO 이벤트 루프가 디스크를 읽느라 멈추지 않게)
+    // 대기열이 가득 차 있으면 RejectedExecutionException으로 실패한 future를 돌려준다.
+    CompletableFuture<List<Hit>> searchAsync(List<String> words, int limit) {
+        long start = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return search(words, limit);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                } finally {
+                    latency.recordNanos(System.nanoTime() - start);
+                }
+            }, workers);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // 모든 검색어가 들어 있는 메시지를 최신 것부터 최대 limit개 (돌려줄 때는 오래된 순서)
+    List<Hit> search(List<String> words, int limit) throws IOException {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String word : words) {
+            addTerms(word, terms, true);
+        }
+        List<Hit> hits = new ArrayList<>();
+        if (terms.isEmpty() || limit <= 0) return hits;
+        String[] query = terms.toArray(new String[0]);
+
+        MemorySegment frozen;
+        DiskSegment[] segments;
+        synchronized (this) { // 채우는 중인 segment는 잠근 채로 찾는다. (메모리만 보므로 짧다)
+            collect(active, query, words, limit, hits);
+            frozen = spilling;
+            segments = disk;
+            for (DiskSegment s : segments) {
+                s.acquire(); // 찾는 동안 보존 개수를 넘어 빠지더라도 파일을 닫지 않게
+            }
+        }
+        try {
+            if (frozen != null) collect(frozen, query, words, limit, hits);
+            for (int i = segments.length - 1; i >= 0 && hits.size() < limit; i--) {
+                collect(segments[i], query, words, limit, hits);
+            }
+        } finally {
+            for (DiskSegment s : segments) {
+                s.release();
+            }
+        }
+        List<Hit> result = new ArrayList<>(hits.size());
+        for (int i = hits.size() - 1; i >= 0; i--) {
+            result.add(hits.get(i));
+        }
+        return result;
+    }
+
+    // segment 하나에서 교집합을 최신 번호부터 거꾸로 훑으며 hits를 채운다.
+    private static void collect(Segment segment, String[] query, List<String> words, int limit, List<Hit> hits) throws IOException {
+        int[][] lists = new int[query.length][];
+        for (int i = 0; i < query.length; i++) {
+            lists[i] = segment.postings(query[i]);
+            if (lists[i].length == 0) return; // 이 segment에는 없는 단어가 있다.
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length)); // 가장 짧은 목록을 기준으로
+        int[] shortest = lists[0];
+        for (int i = shortest.length - 1; i >= 0 && hits.size() < limit; i--) {
+            int id = shortest[i];
+            boolean all = true;
+            for (int j = 1; j < lists.length && all; j++) {
+                all = Arrays.binarySearch(lists[j], id) >= 0;
+            }
+            if (!all) continue;
+            Hit hit = segment.doc(id);
+            if (containsAll(hit.line, words)) hits.add(hit);
+        }
+    }
+
+    private static boolean containsAll(String line, List<String> words) {
+        String text = body(line).toLowerCase(Locale.ROOT);
+        for (String word : words) {
+            if (!text.contains(word)) return false;
+        }
+        return true;
+    }
+
+    // --- [단어 나누기] ---
+    // 사용자가 입력한 검색어를 단어들로 나눈다. (소문자, 글자/숫자 덩어리, 최대 MAX_WORDS개)
+    static List<String> words(String query) {
+        return split(query, MAX_WORDS);
+    }
+
+    private static List<String> split(String text, int max) {
+        List<String> words = new ArrayList<>();
+        int i = 0;
+        while (i < text.length() && words.size() < max) {
+            while (i < text.length() && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            int start = i;
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (i > start) words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        }
+        return words;
+    }
+
+    // 색인할 때와 찾을 때 똑같이 나눈다. ASCII 단어는 통째로, 그 밖의 글자(한글 등)가 섞인 단어는 두 글자씩.
+    // 색인할 때(query가 false)는 섞인 단어에서 더 넣는다.
+    //    - ASCII가 아닌 글자 하나씩 (unigram) : 한 글자 검색어("회")로 "회의는"을 찾게
+    //    - 이어진 ASCII 부분 통째로 : "abc"로 "abc회의"를 찾게 (ASCII 검색어는 통째로 찾으므로)
+    // 찾을 때 두 글자 이상이면 bigram만 본다. 그 글자들이 들어 있는 것은 bigram으로 이미 걸러지므로
+    // 긴 unigram 목록까지 교집합에 넣을 필요가 없다.
+    private static void addTerms(String word, Set<String> out, boolean query) {
+        if (word.length() > MAX_TERM) word = word.substring(0, MAX_TERM);
+        boolean ascii = true;
+        for (int i = 0; i < word.length() && ascii; i++) {
+            ascii = word.charAt(i) < 0x80;
+        }
+        if (ascii || word.length() == 1) {
+            out.add(word);
+            return;
+        }
+        for (int i = 0; i + 1 < word.length(); i++) {
+            out.add(word.substring(i, i + 2));
+        }
+        if (query) return;
+        int i = 0;
+        while (i < word.length()) {
+            int start = i;
+            if (word.charAt(i) >= 0x80) {
+                out.add(word.substring(start, ++i));
+                continue;
+            }
+            while (i < word.length() && word.charAt(i) < 0x80) i++;
+            out.add(word.substring(start, i));
+        }
+    }
+
+    // 색인할 부분 : 기록된 줄("MESSAGE alice: 안녕")에서 앞의 "MESSAGE "는 빼고 보낸 사람 이름부터
+    private static String body(String line) {
+        return line.startsWith("MESSAGE ") ? line.substring(8) : line;
+    }
+
+    // --- [segment 공통] ---
+    private interface Segment {
+        int[] postings(String term) throws IOException; // 없으면 빈 배열
+
+        Hit doc(int id) throws IOException;
+    }
+
+    // --- [메모리 segment] ---
+    private static final class MemorySegment implements Segment {
+        private static final int[] NONE = new int[0];
+
+        private final HashMap<String, Postings> terms = new HashMap<>();
+        private final Set<String> scratch = new LinkedHashSet<>();
+        private long[] times = new long[1024];
+        private String[] rooms = new String[1024];
+        private String[] lines = new String[1024];
+        private int size;
+        private LogPosition logPosition = LogPosition.START; // 마지막으로 넣은 메시지의 기록 위치
+
+        void add(long time, String room, String line, LogPosition end) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                rooms = Arrays.copyOf(rooms, size * 2);
+                lines = Arrays.copyOf(lines, size * 2);
+            }
+            int id = size++;
+            times[id] = time;
+            rooms[id] = room;
+            lines[id] = line;
+            logPosition = end;
+            for (String word : split(body(line), Integer.MAX_VALUE)) {
+                addTerms(word, scratch, false);
+            }
+            for (String term : scratch) {
+                terms.computeIfAbsent(term, t -> new Postings()).add(id);
+            }
+            scratch.clear();
+        }
+
+        @Override
+        public int[] postings(String term) {
+            Postings p = terms.get(term);
+            return p == null ? NONE : Arrays.copyOf(p.ids, p.size);
+        }
+
+        @Override
+        public Hit doc(int id) {
+            return new Hit(times[id], rooms[id], lines[id]);
+        }
+    }
+
+    // 단어 하나의 메시지 번호들. 번호는 늘어나기만 하므로 덧붙이면 정렬이 유지된다.
+    private static final class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    // --- [디스크 segment] ---
+    private static final class DiskSegment implements Segment {
+        private final File file;
+        private final FileChannel channel; // 위치를 지정해서 읽으므로 여러 검색 스레드가 같이 써도 된다.
+        private final int docCount;
+        private final LogPosition logPosition;
+        private final long docTable;
+        private final String[] terms;   // 정렬됨
+        private final int[] counts;     // 단어마다 메시지 수
+        private final long[] offsets;   // 단어마다 posting list 위치 (terms.length + 1개, 마지막은 끝)
+        // 이 segment를 쓰는 쪽의 수 : 색인(disk 배열에 들어 있는 동안) 1 + 지금 읽고 있는 검색들.
+        // 0이 되면 파일을 닫고 지운다. acquire는 this(SearchIndex)로 잠그고 disk에서 꺼낸 직후에만 부른다.
+        private final AtomicInteger refs = new AtomicInteger(1);
+
+        private DiskSegment(File file, FileChannel channel, int docCount, LogPosition logPosition, long docTable,
+                            String[] terms, int[] counts, long[] offsets) {
+            this.file = file;
+            this.channel = channel;
+            this.docCount = docCount;
+            this.logPosition = logPosition;
+            this.docTable = docTable;
+            this.terms = terms;
+            this.counts = counts;
+            this.offsets = offsets;
+        }
+
+        static DiskSegment open(File file) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                long length = channel.size();
+                if (length < TAIL) throw new EOFException("너무 짧습니다");
+                ByteBuffer tail = read(channel, length - TAIL, TAIL);
+                int docCount = tail.getInt();
+                int termCount = tail.getInt();
+                LogPosition logPosition = new LogPosition(tail.getInt(), tail.getLong());
+                long docTable = tail.getLong();
+                long termsOffset = tail.getLong();
+                if (tail.getInt() != MAGIC) throw new IOException("MAGIC이 다릅니다");
+
+                ByteBuffer dict = read(channel, termsOffset, (int) (length - TAIL - termsOffset));
+                String[] terms = new String[termCount];
+                int[] counts = new int[termCount];
+                long[] offsets = new long[termCount + 1];
+                for (int i = 0; i < termCount; i++) {
+                    byte[] b = new byte[dict.getShort() & 0xffff];
+                    dict.get(b);
+                    terms[i] = new String(b, StandardCharsets.UTF_8);
+                    counts[i] = dict.getInt();
+                    offsets[i + 1] = offsets[i] + dict.getInt();
+                }
+                return new DiskSegment(file, channel, docCount, logPosition, docTable, terms, counts, offsets);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e instanceof IOException ? (IOException) e : new IOException(e.toString());
+            }
+        }
+
+        // 메모리 segment를 파일로 쓴다. 임시 파일에 다 쓰고 fsync한 다음 이름을 바꾼다. (쓰다 죽어도 반쪽 파일이 없다)
+        static DiskSegment write(File file, MemorySegment segment) throws IOException {
+            String[] sorted = segment.terms.keySet().toArray(new String[0]);
+            Arrays.sort(sorted);
+            File tmp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+                // 1. posting lists : 앞 번호와의 차이를 가변 길이(varint)로. 대부분 1바이트다.
+                int[] bytes = new int[sorted.length];
+                for (int i = 0; i < sorted.length; i++) {
+                    Postings p = segment.terms.get(sorted[i]);
+                    int before = out.size();
+                    int previous = 0;
+                    for (int j = 0; j < p.size; j++) {
+                        writeVarInt(out, p.ids[j] - previous);
+                        previous = p.ids[j];
+                    }
+                    bytes[i] = out.size() - before;
+                }
+                // 2. 메시지들과 위치표
+                long[] docOffsets = new long[segment.size + 1];
+                for (int i = 0; i < segment.size; i++) {
+                    docOffsets[i] = out.size();
+                    out.writeLong(segment.times[i]);
+                    writeString(out, segment.rooms[i]);
+                    writeString(out, segment.lines[i]);
+                }
+                docOffsets[segment.size] = out.size();
+                long docTable = out.size();
+                for (long offset : docOffsets) {
+                    out.writeLong(offset);
+                }
+                // 3. 단어 사전
+                long termsOffset = out.size();
+                for (int i = 0; i < sorted.length; i++) {
+                    byte[] b = sorted[i].getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(b.length);
+                    out.write(b);
+                    out.writeInt(segment.terms.get(sorted[i]).size);
+                    out.writeInt(bytes[i]);
+                }
+                // 4. 꼬리
+                out.writeInt(segment.size);
+                out.writeInt(sorted.length);
+                out.writeInt(segment.logPosition.segment);
+                out.writeLong(segment.logPosition.offset);
+                out.writeLong(docTable);
+                out.writeLong(termsOffset);
+                out.writeInt(MAGIC);
+                out.flush();
+                fos.getFD().sync();
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return open(file);
+        }
+
+        @Override
+        public int[] postings(String term) throws IOException {
+            int i = Arrays.binarySearch(terms, term);
+            if (i < 0) return MemorySegment.NONE;
+            ByteBuffer b = read(channel, offsets[i], (int) (offsets[i + 1] - offsets[i]));
+            int[] ids = new int[counts[i]];
+            int previous = 0;
+            for (int j = 0; j < ids.length; j++) {
+                previous += readVarInt(b);
+                ids[j] = previous;
+            }
+            return ids;
+        }
+
+        @Override
+        public Hit doc(int id) throws IOException {
+            ByteBuffer range = read(channel, docTable + 8L * id, 16);
+            long start = range.getLong();
+            long end = range.getLong();
+            ByteBuffer b = read(channel, start, (int) (end - start));
+            long time = b.getLong();
+            return new Hit(time, readString(b), readString(b));
+        }
+
+        void acquire() {
+            refs.incrementAndGet();
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0) delete();
+        }
+
+        private void delete() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            if (!file.delete()) System.out.println("[search] 오래된 색인을 지우지 못했습니다 : " + file);
+        }
+    }
+
+    // --- [파일 읽기/쓰기 도우미] ---
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(length);
+        while (b.hasRemaining()) {
+            if (channel.read(b, position + b.position()) < 0) throw new EOFException();
+        }
+        b.flip();
+        return b;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7f) != 0) {
+            out.write((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int readVarInt(ByteBuffer b) {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte x = b.get();
+            v |= (x & 0x7f) << shift;
+            if (x >= 0) return v;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
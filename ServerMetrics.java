@@ -0,0 +1,237 @@
+package Chatroom;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import com.sun.net.httpserver.HttpServer;
+
+// --- [서버 통계] ---
+// 서버가 지금 어떤 상태인지(접속자 수, 초당 메시지 수, 방송 지연, 느린 접속자 때문에 버린 메시지 등)를 숫자로 보여준다.
+//    - 메시지를 처리하는 경로에서는 LongAdder를 더하거나 LatencyHistogram에 기록하는 것만 한다. (락 없음)
+//      LongAdder는 스레드마다 따로 더해 두었다가 읽을 때만 합치므로 여러 스레드가 동시에 더해도 서로 기다리지 않는다.
+//    - 나머지 값(접속자 수, 대기열 길이 등)은 읽는 순간에 이미 있는 객체에서 가져온다. (gauge)
+//    - 초당 메시지 수는 1초마다 도는 스레드가 카운터의 차이로 계산해 둔다.
+// 보는 방법은 두 가지이다.
+//    - JMX : jconsole 등에서 Chatroom:type=ChatServer 의 속성으로 본다.
+//    - 텍스트 : http://127.0.0.1:59090/metrics (-Dchat.metrics.port, 0이면 끈다)
+//      "이름 값" 한 줄씩인 Prometheus 텍스트 형식이다. 이 컴퓨터(loopback)에서만 접속할 수 있다.
+final class ServerMetrics {
+    // --- 메시지 처리 경로에서 더하는 카운터 ---
+    static final LongAdder messagesIn = new LongAdder();   // 클라이언트가 보낸 명령/메시지 수
+    static final LongAdder messagesOut = new LongAdder();  // 소켓에 쓴 Frame 수
+    static final LongAdder bytesWritten = new LongAdder(); // 소켓에 쓴 바이트 수
+    static final LongAdder connections = new LongAdder();  // 지금 열려 있는 연결 수 (로그인 전 포함)
+    // 방 하나에 방송할 때 모든 멤버의 대기열에 넣는 데 걸린 시간 (마이크로초)
+    static final LatencyHistogram fanout = new LatencyHistogram();
+
+    private static final Map<String, Metric> METRICS = new LinkedHashMap<>();
+    private static volatile double inPerSecond;
+    private static volatile double outPerSecond;
+
+    private ServerMetrics() {
+    }
+
+    private static final class Metric {
+        final String type; // counter(계속 늘기만 한다) 또는 gauge
+        final String help;
+        final Supplier<Number> value;
+
+        Metric(String type, String help, Supplier<Number> value) {
+            this.type = type;
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    static synchronized void counter(String name, String help, Supplier<Number> value) {
+        METRICS.put(name, new Metric("counter", help, value));
+    }
+
+    static synchronized void gauge(String name, String help, Supplier<Number> value) {
+        METRICS.put(name, new Metric("gauge", help, value));
+    }
+
+    // 히스토그램 하나를 p50/p99/p999/max gauge 네 개로 내보낸다.
+    static void histogram(String name, String help, LatencyHistogram h) {
+        counter(name + "_count", help + " (기록 수)", h::count);
+        gauge(name + "_p50_us", help + " p50", () -> h.percentile(0.50));
+        gauge(name + "_p99_us", help + " p99", () -> h.percentile(0.99));
+        gauge(name + "_p999_us", help + " p999", () -> h.percentile(0.999));
+        gauge(name + "_max_us", help + " max", h::max);
+    }
+
+    // 서버가 준비된 뒤(main에서) 한 번 부른다.
+    static void start() throws Exception {
+        counter("chat_messages_in_total", "받은 명령/메시지 수", messagesIn::sum);
+        counter("chat_messages_out_total", "소켓에 쓴 메시지 수", messagesOut::sum);
+        gauge("chat_messages_in_per_second", "초당 받은 메시지 수", () -> inPerSecond);
+        gauge("chat_messages_out_per_second", "초당 보낸 메시지 수", () -> outPerSecond);
+        counter("chat_bytes_written_total", "소켓에 쓴 바이트 수", bytesWritten::sum);
+        gauge("chat_connections", "열려 있는 연결 수", connections::sum);
+        gauge("chat_sessions", "로그인한 접속자 수", ChatServer.sessions::size);
+        histogram("chat_broadcast_fanout", "방송 한 번을 모든 멤버 대기열에 넣는 시간", fanout);
+        histogram("chat_auth_latency", "로그인/회원가입 대기+해시 시간", ChatServer.auth.latency);
+        gauge("chat_auth_queue", "인증 대기열 길이", ChatServer.auth::queueDepth);
+        counter("chat_auth_busy_total", "인증 대기열이 가득 차서 거절한 수", ChatServer.auth.rejected::sum);
+        counter("chat_outbound_dropped_total", "송신 대기열이 넘쳐서 버린 메시지 수", OutboundQueue.droppedMessages::sum);
+        counter("chat_slow_consumer_disconnects_total", "느린 접속자를 끊은 수", OutboundQueue.slowConsumerDisconnects::sum);
+        counter("chat_rate_limited_total", "전송 속도 제한에 걸려 버린 메시지 수", RateLimiter.limited::sum);
+        counter("chat_idle_pings_total", "조용한 연결에 보낸 PING 수", IdleReaper.pings::sum);
+        counter("chat_idle_evictions_total", "응답이 없어서 끊은 연결 수", IdleReaper.evictions::sum);
+        counter("chat_idle_legacy_total", "PING에 한 번도 답하지 않아서 끊지 않고 지켜보기를 그만둔 연결 수", IdleReaper.legacy::sum);
+        counter("chat_wire_deflate_saved_bytes_total", "압축으로 아낀 송신 바이트 수", Frame.deflateSaved::sum);
+        gauge("chat_search_docs", "검색 색인에 든 메시지 수", ChatServer.search::size);
+        histogram("chat_search_latency", "/search 한 번 (대기+찾기) 시간", ChatServer.search.latency);
+        counter("chat_search_busy_total", "검색 대기열이 가득 차서 거절한 수", SearchIndex.rejected::sum);
+        counter("chat_log_dropped_total", "대화 기록 대기열이 넘치거나 쓰기 오류로 못 남긴 수", ChatServer.messages.dropped::sum);
+        counter("chat_log_errors_total", "대화 기록 쓰기 오류 수 (그 묶음은 버리고 새 파일로 다시 쓴다)", ChatServer.messages.errors::sum);
+        gauge("chat_mailbox_stored", "보관 중인 오프라인 귓속말 수", ChatServer.mailbox::size);
+
+        startSampler();
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("Chatroom:type=ChatServer"));
+        int port = Integer.getInteger("chat.metrics.port", 59090);
+        if (port > 0) {
+            startHttp(port);
+            System.out.println(">>> 서버 통계 : http://127.0.0.1:" + port + "/metrics (JMX Chatroom:type=ChatServer) <<<");
+        }
+    }
+
+    // 1초마다 카운터의 차이로 초당 처리량을 구한다.
+    private static void startSampler() {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        long[] last = {messagesIn.sum(), messagesOut.sum(), System.nanoTime()};
+        timer.scheduleAtFixedRate(() -> {
+            long in = messagesIn.sum();
+            long out = messagesOut.sum();
+            long now = System.nanoTime();
+            double seconds = (now - last[2]) / 1e9;
+            inPerSecond = (in - last[0]) / seconds;
+            outPerSecond = (out - last[1]) / seconds;
+            last[0] = in;
+            last[1] = out;
+            last[2] = now;
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private static void startHttp(int port) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/metrics", exchange -> {
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        http.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-http");
+            t.setDaemon(true);
+            return t;
+        }));
+        http.start();
+    }
+
+    // 텍스트 형식 : # HELP / # TYPE / 이름 값
+    static synchronized String render() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Metric> e : METRICS.entrySet()) {
+            Metric m = e.getValue();
+            sb.append("# HELP ").append(e.getKey()).append(' ').append(m.help).append('\n');
+            sb.append("# TYPE ").append(e.getKey()).append(' ').append(m.type).append('\n');
+            sb.append(e.getKey()).append(' ').append(m.value.get()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // --- [JMX] ---
+    // 속성 목록이 위 METRICS 표에서 나오므로 DynamicMBean으로 만든다. (읽기 전용)
+    private static final class Bean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String name) throws AttributeNotFoundException {
+            Metric m;
+            synchronized (ServerMetrics.class) {
+                m = METRICS.get(name);
+            }
+            if (m == null) throw new AttributeNotFoundException(name);
+            return m.value.get();
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                try {
+                    list.add(new Attribute(name, getAttribute(name)));
+                } catch (AttributeNotFoundException e) {
+                    // 없는 이름은 건너뛴다.
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            MBeanAttributeInfo[] attributes;
+            synchronized (ServerMetrics.class) {
+                attributes = new MBeanAttributeInfo[METRICS.size()];
+                int i = 0;
+                for (Map.Entry<String, Metric> e : METRICS.entrySet()) {
+                    Object v = e.getValue().value.get();
+                    attributes[i++] = new MBeanAttributeInfo(e.getKey(), v.getClass().getName(), e.getValue().help,
+                            true, false, false);
+                }
+            }
+            return new MBeanInfo(getClass().getName(), "채팅 서버 통계", attributes, null, null, null);
+        }
+
+        // 모든 값이 읽기 전용이다. DynamicMBean 약속대로 쓸 수 없는 이름은 AttributeNotFoundException으로 알린다.
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " : 읽기 전용입니다.");
+        }
+
+        // 바꾼 것만 돌려준다. (setAttribute와 같은 이유로 항상 비어 있다)
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            AttributeList set = new AttributeList();
+            for (Attribute attribute : attributes.asList()) {
+                try {
+                    setAttribute(attribute);
+                    set.add(attribute);
+                } catch (AttributeNotFoundException e) {
+                    // 읽기 전용이다.
+                }
+            }
+            return set;
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName), "호출할 수 있는 작업이 없습니다.");
+        }
+    }
+}
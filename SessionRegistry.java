@@ -0,0 +1,47 @@
+package Chatroom;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// --- [접속자 명부 (세션 레지스트리)] ---
+// 예전의 activeClients(HashMap + 전역 락)를 대신한다.
+// ConcurrentHashMap은 키마다 잘게 나뉘어 동기화되므로 조회/입장/퇴장/방송이 서로를 막지 않는다.
+//    - 값으로 PrintWriter가 아니라 ClientSession 전체를 들고 있어서 송신 대기열, 상태 등을 바로 쓸 수 있다.
+//    - 로그인은 putIfAbsent 한 번으로 "아직 아무도 없을 때만 등록"을 원자적으로 처리한다.
+//      (예전에는 containsKey 확인과 put 사이에 같은 ID가 동시에 두 번 로그인할 수 있었다.)
+//    - 방송은 values()를 그대로 순회한다. 복사본을 만들지 않으며, 순회 도중 입장/퇴장이 있어도 안전하다.
+class SessionRegistry {
+    private final ConcurrentHashMap<String, ClientSession> sessions = new ConcurrentHashMap<>();
+
+    boolean contains(String userID) {
+        return sessions.containsKey(userID);
+    }
+
+    ClientSession get(String userID) {
+        return sessions.get(userID);
+    }
+
+    // 같은 ID로 이미 접속한 세션이 없을 때만 등록한다. 등록에 성공하면 true.
+    boolean register(String userID, ClientSession session) {
+        return sessions.putIfAbsent(userID, session) == null;
+    }
+
+    // 명부에 올라 있는 세션이 바로 이 세션일 때만 지운다.
+    void unregister(String userID, ClientSession session) {
+        sessions.remove(userID, session);
+    }
+
+    // 복사 없이 순회할 수 있는 현재 세션들 (약한 일관성 : 순회 중 변경은 보일 수도, 안 보일 수도 있다)
+    Collection<ClientSession> all() {
+        return sessions.values();
+    }
+
+    Set<String> userIDs() {
+        return sessions.keySet();
+    }
+
+    int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,349 @@
+package Chatroom;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// --- [TCP 전체 연결(mesh) 전송 계층] ---
+// 노드마다 -Dchat.cluster.bind:-Dchat.cluster.port 로 다른 노드의 연결을 받고, -Dchat.cluster.peers=host:port,host:port 에 적힌
+// 노드들에게 직접 연결한다. 연결이 끊기면 2초마다 다시 시도한다. (그 노드와 다른 연결이 살아 있으면 걸지 않는다)
+//    - 연결하자마자 서로 자기 노드 이름과 무작위 값(nonce)을 보낸다. (HELLO)
+//    - 이어서 서로 "상대 nonce + 내 nonce + 내 이름"의 HMAC-SHA256(공유 비밀 키)을 보내고 (AUTH) 확인한다.
+//      키를 모르는 쪽은 노드 행세를 할 수 없고, 이 확인을 통과한 연결에서 온 메시지만 Cluster로 넘긴다.
+//      매번 nonce가 새로 정해지므로 지난 AUTH를 엿들어 다시 보내도 통하지 않는다.
+//    - 두 노드가 동시에 서로에게 연결하면 연결이 2개 생기는데, "이름이 작은 노드가 건 연결"만 남기고 나머지는 닫는다.
+//      양쪽이 같은 규칙으로 고르므로 따로 상의하지 않아도 같은 연결이 남는다.
+//    - 프레임 형식 : [길이 4바이트][UTF-8 문자열]
+//    - 보내는 쪽은 연결마다 대기열 + writer 스레드를 둔다. 방송하는 스레드는 대기열에 넣기만 하고,
+//      상대 노드가 못 따라와서 대기열이 가득 차면 버린다. (dropped로 센다)
+class TcpMeshTransport implements ClusterTransport {
+    private static final String HELLO = "HELLO";
+    private static final String AUTH = "AUTH";
+    private static final int NONCE_BYTES = 16;
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000; // HELLO/AUTH를 보내지 않고 붙잡고만 있는 연결을 끊는다.
+    private static final Base64.Encoder B64 = Base64.getEncoder();
+    private static final Base64.Decoder B64D = Base64.getDecoder();
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int MAX_FRAME = 16 << 20;
+    private static final int QUEUE_CAPACITY = Integer.getInteger("chat.cluster.queue", 65536);
+    private static final long RETRY_MS = 2000;
+
+    private final InetAddress bindAddress;
+    private final int listenPort;
+    private final SecretKeySpec key;
+    private final List<InetSocketAddress> seeds = new ArrayList<>();
+    private final ConcurrentHashMap<String, Link> links = new ConcurrentHashMap<>(); // 노드 이름 -> 살아 있는 연결
+    final LongAdder dropped = new LongAdder();
+    final LongAdder rejected = new LongAdder(); // 인증에 실패한 연결 수
+    private String localNode;
+    private Listener listener;
+    private ServerSocket server;
+    private volatile boolean closed;
+
+    TcpMeshTransport(InetAddress bindAddress, int listenPort, String peers, byte[] secret) {
+        this.bindAddress = bindAddress;
+        this.listenPort = listenPort;
+        this.key = new SecretKeySpec(secret, "HmacSHA256");
+        for (String peer : peers.split(",")) {
+            peer = peer.trim();
+            if (peer.isEmpty()) continue;
+            int colon = peer.lastIndexOf(':');
+            seeds.add(new InetSocketAddress(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1))));
+        }
+    }
+
+    @Override
+    public void start(String localNode, Listener listener) throws IOException {
+        this.localNode = localNode;
+        this.listener = listener;
+        this.server = new ServerSocket(listenPort, 50, bindAddress);
+        daemon("cluster-accept", () -> {
+            while (!closed) {
+                try {
+                    new Link(server.accept(), false).start();
+                } catch (IOException e) {
+                    if (!closed) System.out.println("[cluster] " + e);
+                }
+            }
+        });
+        for (InetSocketAddress seed : seeds) {
+            daemon("cluster-connect-" + seed.getPort(), () -> connectLoop(seed));
+        }
+    }
+
+    // 이 주소로 가는 연결이 없으면 계속 다시 건다.
+    // 그 주소의 노드와 이미 인증된 연결이 있으면(상대가 건 연결이 규칙에 따라 남은 경우) 그 연결이 끊길 때까지 걸지 않는다.
+    // 안 그러면 규칙에서 지는 연결을 2초마다 새로 걸었다가 닫기를 끝없이 되풀이한다.
+    private void connectLoop(InetSocketAddress seed) {
+        Link current = null;
+        String node = null; // 이 주소에 있는 노드 이름 (한 번 인증을 마치면 안다)
+        while (!closed) {
+            if (current != null && current.remoteNode != null) node = current.remoteNode;
+            if ((current == null || current.closed) && !isLinked(node)) {
+                try {
+                    Socket socket = new Socket();
+                    socket.connect(seed, 1000);
+                    current = new Link(socket, true);
+                    current.start();
+                } catch (IOException e) {
+                    current = null; // 아직 안 떠 있다. 잠시 후 다시
+                }
+            }
+            try {
+                Thread.sleep(RETRY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private boolean isLinked(String node) {
+        if (node == null) return false;
+        Link link = links.get(node);
+        return link != null && !link.closed;
+    }
+
+    @Override
+    public void broadcast(String message) {
+        if (links.isEmpty()) return;
+        byte[] frame = message.getBytes(StandardCharsets.UTF_8);
+        for (Link link : links.values()) {
+            link.enqueue(frame);
+        }
+    }
+
+    @Override
+    public void send(String node, String message) {
+        Link link = links.get(node);
+        if (link != null) link.enqueue(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Set<String> peers() {
+        return new HashSet<>(links.keySet());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try { if (server != null) server.close(); } catch (IOException e) {}
+        for (Link link : links.values()) {
+            link.close();
+        }
+    }
+
+    // HMAC-SHA256(key, AUTH \t 받는 쪽 nonce \t 보내는 쪽 nonce \t 보내는 쪽 이름)
+    // 보내는 쪽 이름이 들어가므로 상대가 보낸 AUTH를 그대로 되돌려 보내도(반사) 다른 이름으로는 통하지 않는다.
+    private byte[] proof(String verifierNonce, String proverNonce, String proverNode) throws IOException {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac.doFinal(String.join("\t", AUTH, verifierNonce, proverNonce, proverNode).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void daemon(String name, Runnable task) {
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // --- [다른 노드 하나와의 연결] ---
+    private class Link {
+        private final Socket socket;
+        private final boolean initiatedByMe;
+        private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile String remoteNode; // 인증을 마치면 정해진다. (connectLoop도 읽는다)
+        private volatile Thread writer;
+        private volatile boolean closed;
+
+        Link(Socket socket, boolean initiatedByMe) {
+            this.socket = socket;
+            this.initiatedByMe = initiatedByMe;
+        }
+
+        void start() {
+            daemon("cluster-link", this::readLoop);
+        }
+
+        void enqueue(byte[] frame) {
+            if (closed || !queue.offer(frame)) dropped.increment();
+        }
+
+        // 이 연결을 건 쪽 노드 이름
+        String initiator() {
+            return initiatedByMe ? localNode : remoteNode;
+        }
+
+        private void readLoop() {
+            try {
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                // AUTH를 통과하고 links에 남은 연결에서만 아래 onMessage까지 간다. (Listener.onMessage의 약속)
+                if (!authenticate(in, out)) return;
+                if (!register()) return;
+                writer = new Thread(() -> writeLoop(out), "cluster-writer-" + remoteNode);
+                writer.setDaemon(true);
+                writer.start();
+
+                while (!closed) {
+                    listener.onMessage(remoteNode, new String(readFrame(in), StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                // 연결이 끊겼다.
+            } finally {
+                close();
+            }
+        }
+
+        // HELLO와 AUTH를 주고받는다. 상대가 같은 키를 가진 다른 노드이면 true (remoteNode가 정해진다).
+        private boolean authenticate(DataInputStream in, DataOutputStream out) throws IOException {
+            byte[] bytes = new byte[NONCE_BYTES];
+            RANDOM.nextBytes(bytes);
+            String myNonce = B64.encodeToString(bytes);
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            writeFrame(out, (HELLO + "\t" + localNode + "\t" + myNonce).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            String[] hello = new String(readHandshake(in), StandardCharsets.UTF_8).split("\t", -1);
+            if (hello.length != 3 || !hello[0].equals(HELLO) || hello[1].isEmpty()) {
+                return reject("HELLO가 아닙니다");
+            }
+            String node = hello[1];
+            String theirNonce = hello[2];
+            if (node.equals(localNode)) { // peers에 자기 자신이 적혀 있었다.
+                closeQuietly();
+                return false;
+            }
+            writeFrame(out, (AUTH + "\t" + B64.encodeToString(proof(theirNonce, myNonce, localNode))).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            String auth = new String(readHandshake(in), StandardCharsets.UTF_8);
+            byte[] signature;
+            try {
+                signature = auth.startsWith(AUTH + "\t") ? B64D.decode(auth.substring(AUTH.length() + 1)) : null;
+            } catch (IllegalArgumentException e) {
+                signature = null; // base64가 아니다.
+            }
+            if (signature == null || !MessageDigest.isEqual(proof(myNonce, theirNonce, node), signature)) {
+                return reject("인증 실패 (노드 " + node + ")");
+            }
+            socket.setSoTimeout(0);
+            remoteNode = node;
+            return true;
+        }
+
+        // 인증 전에는 큰 프레임을 받지 않는다. (키가 없는 상대가 메모리를 잡아먹지 못하게)
+        private byte[] readHandshake(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0 || length > 1024) throw new EOFException("잘못된 HELLO 길이 : " + length);
+            byte[] frame = new byte[length];
+            in.readFully(frame);
+            return frame;
+        }
+
+        private boolean reject(String reason) {
+            rejected.increment();
+            System.out.println("[cluster] " + socket.getRemoteSocketAddress() + " 연결을 거절합니다 : " + reason);
+            closeQuietly();
+            return false;
+        }
+
+        // 같은 노드와의 연결이 이미 있으면 규칙에 따라 하나만 남긴다. 이 연결을 쓰게 되면 true.
+        private boolean register() {
+            boolean[] added = {false};
+            Link[] loser = {null};
+            links.compute(remoteNode, (node, existing) -> {
+                if (existing == null || existing.closed) {
+                    added[0] = existing == null || existing.closed;
+                    return this;
+                }
+                String smaller = localNode.compareTo(remoteNode) < 0 ? localNode : remoteNode;
+                if (initiator().equals(smaller) && !existing.initiator().equals(smaller)) {
+                    loser[0] = existing;
+                    return this;
+                }
+                loser[0] = this;
+                return existing;
+            });
+            if (loser[0] != null) loser[0].closeQuietly(); // 노드는 계속 살아 있으므로 onPeerDown은 부르지 않는다.
+            if (loser[0] == this) return false;
+            if (added[0]) listener.onPeerUp(remoteNode);
+            return true;
+        }
+
+        private void writeLoop(DataOutputStream out) {
+            try {
+                List<byte[]> batch = new ArrayList<>();
+                while (!closed) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch);
+                    for (byte[] frame : batch) {
+                        writeFrame(out, frame);
+                    }
+                    out.flush();
+                    batch.clear();
+                }
+            } catch (IOException e) {
+                close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+            out.writeInt(frame.length);
+            out.write(frame);
+        }
+
+        private byte[] readFrame(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_FRAME) throw new EOFException("잘못된 프레임 길이 : " + length);
+            byte[] frame = new byte[length];
+            in.readFully(frame);
+            return frame;
+        }
+
+        // 연결이 끊겼다. 이 노드의 살아 있는 연결이 바로 이것이었으면 노드가 떠난 것으로 알린다.
+        void close() {
+            if (closed) return;
+            closeQuietly();
+            if (remoteNode != null && links.remove(remoteNode, this)) {
+                listener.onPeerDown(remoteNode);
+            }
+        }
+
+        private void closeQuietly() {
+            closed = true;
+            try { socket.close(); } catch (IOException e) {}
+            Thread w = writer;
+            if (w != null) w.interrupt(); // queue.take()에서 기다리고 있을 수 있다.
+        }
+    }
+}
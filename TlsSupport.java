@@ -0,0 +1,102 @@
+package Chatroom;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+// --- [TLS 설정] ---
+// 예전에는 LOGIN 비밀번호까지 모든 줄이 평문으로 오갔다. 키 저장소를 주면 채팅 포트를 TLS로 연다.
+//    서버   : -Dchat.tls.keystore=server.p12 -Dchat.tls.password=비번  (주지 않으면 예전처럼 평문)
+//    클라이언트 : -Dchat.tls=true [-Dchat.tls.truststore=client.p12 -Dchat.tls.password=비번]
+//                (truststore를 주지 않으면 JDK 기본 신뢰 목록을 쓴다)
+// 세션 재개 (session resumption)
+//    TLS 연결을 처음 맺을 때는 인증서 검증 + 키 교환(비대칭 암호) 때문에 왕복과 CPU가 많이 든다.
+//    클라이언트는 SSLContext 하나를 프로그램이 끝날 때까지 재사용하므로, 같은 서버(host:port)에 다시 붙을 때
+//    지난번 서버가 준 세션 티켓(TLS 1.3 PSK)을 내밀어 인증서 검증 없이 짧은 핸드셰이크로 끝낸다.
+//    서버는 티켓을 스스로 암호화해서 주므로(stateless) 접속자가 많아도 서버 쪽 세션 캐시가 커지지 않는다.
+//    -Dchat.tls.sessionTimeoutSeconds (기본 86400) 동안 재개할 수 있다.
+final class TlsSupport {
+    private static final String[] PROTOCOLS = {"TLSv1.3", "TLSv1.2"};
+    private static final int SESSION_TIMEOUT = Integer.getInteger("chat.tls.sessionTimeoutSeconds", 86400);
+
+    private static SSLContext client; // 세션 캐시를 유지하려면 재접속할 때 같은 것을 써야 한다.
+
+    private TlsSupport() {
+    }
+
+    // 서버용. chat.tls.keystore가 없으면 null (평문)
+    static SSLContext serverContext() throws IOException, GeneralSecurityException {
+        String path = System.getProperty("chat.tls.keystore");
+        if (path == null) return null;
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(load(path), password());
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(kmf.getKeyManagers(), null, null);
+        context.getServerSessionContext().setSessionTimeout(SESSION_TIMEOUT);
+        return context;
+    }
+
+    static boolean clientEnabled() {
+        return Boolean.getBoolean("chat.tls");
+    }
+
+    // 클라이언트용. 처음 한 번 만들고 계속 같은 것을 준다.
+    static synchronized SSLContext clientContext() throws IOException, GeneralSecurityException {
+        if (client == null) client = newClientContext();
+        return client;
+    }
+
+    // 세션 캐시가 빈 새 클라이언트 SSLContext. (벤치마크에서 매번 처음 핸드셰이크를 시킬 때도 쓴다)
+    static SSLContext newClientContext() throws IOException, GeneralSecurityException {
+        String path = System.getProperty("chat.tls.truststore");
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(path != null ? load(path) : null);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, tmf.getTrustManagers(), null);
+        context.getClientSessionContext().setSessionTimeout(SESSION_TIMEOUT);
+        return context;
+    }
+
+    // 이미 TCP로 연결된 소켓 위에 TLS를 얹고 핸드셰이크까지 마친다.
+    // host:port를 같이 넘겨야 클라이언트 세션 캐시에서 그 서버의 세션을 찾아 재개한다.
+    // 인증서의 이름(SAN)이 host와 맞는지도 확인한다. (중간자 공격 방지)
+    static SSLSocket wrapClient(Socket plain, String host, int port) throws IOException, GeneralSecurityException {
+        return wrapClient(clientContext(), plain, host, port);
+    }
+
+    static SSLSocket wrapClient(SSLContext context, Socket plain, String host, int port) throws IOException {
+        plain.setTcpNoDelay(true); // 핸드셰이크의 작은 레코드들이 Nagle에 걸려 기다리지 않게 한다.
+        SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket(plain, host, port, true);
+        socket.setEnabledProtocols(PROTOCOLS);
+        SSLParameters params = socket.getSSLParameters();
+        params.setEndpointIdentificationAlgorithm("HTTPS");
+        socket.setSSLParameters(params);
+        socket.startHandshake();
+        return socket;
+    }
+
+    static String[] protocols() {
+        return PROTOCOLS.clone();
+    }
+
+    private static KeyStore load(String path) throws IOException, GeneralSecurityException {
+        KeyStore store = KeyStore.getInstance(path.endsWith(".jks") ? "JKS" : "PKCS12");
+        try (InputStream in = new FileInputStream(path)) {
+            store.load(in, password());
+        }
+        return store;
+    }
+
+    private static char[] password() {
+        return System.getProperty("chat.tls.password", "changeit").toCharArray();
+    }
+}
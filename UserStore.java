@@ -0,0 +1,112 @@
+package Chatroom;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// --- [회원 정보 저장소] ---
+// 예전에는 로그인/회원가입 때마다 users.dat 파일을 처음부터 끝까지 읽으면서 split(",")으로 비교했고,
+// 그 동안 전역 fileLock을 잡고 있어서 모든 로그인이 파일 I/O 뒤에 한 줄로 서야 했다.
+// 이제 서버 시작 시 파일을 한 번만 읽어서 메모리에 ID -> 회원정보(해시, Salt, 이름, 이메일)로 색인해 둔다.
+//    - 로그인 : ConcurrentHashMap 조회 한 번 (파일 I/O 없음, 전역 락 없음)
+//    - 회원가입 : ID를 메모리에 먼저 선점(putIfAbsent)하고, 파일 끝에 한 줄을 덧붙인(append) 뒤에야 성공을 알린다.
+//                 파일 쓰기에 실패하면 선점을 되돌린다. 파일은 덧붙이기만 하므로 기존 내용이 깨질 일이 없다.
+// 파일 형식은 예전과 같다 : ID,해시된비밀번호,Salt,이름,이메일
+class UserStore {
+
+    // 회원 한 명의 정보 (불변)
+    static final class UserRecord {
+        final String userID;
+        final String hashedPassword;
+        final String salt;
+        final String name;
+        final String email;
+
+        UserRecord(String userID, String hashedPassword, String salt, String name, String email) {
+            this.userID = userID;
+            this.hashedPassword = hashedPassword;
+            this.salt = salt;
+            this.name = name;
+            this.email = email;
+        }
+
+        // CSV형태로 콤마로 묶어서 한 줄로 만든다.
+        String toLine() {
+            return String.join(",", userID, hashedPassword, salt, name, email);
+        }
+    }
+
+    // -Dchat.users.fsync=true 이면 가입할 때마다 디스크까지 확실히 기록(fsync)한다.
+    private static final boolean FSYNC = Boolean.getBoolean("chat.users.fsync");
+
+    private final ConcurrentHashMap<String, UserRecord> records = new ConcurrentHashMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock(); // 파일 끝에 덧붙이는 동안만 잡는다.
+    private final FileOutputStream file;
+    private final Writer log;
+
+    private UserStore(File path) throws IOException {
+        load(path);
+        this.file = new FileOutputStream(path, true); // append 모드
+        this.log = new BufferedWriter(new OutputStreamWriter(file, Charset.defaultCharset()));
+    }
+
+    static UserStore open(String fileName) throws IOException {
+        return new UserStore(new File(fileName));
+    }
+
+    // 파일 전체를 한 번 읽어서 색인을 만든다. 같은 ID가 여러 번 있으면 예전처럼 처음 것을 쓴다.
+    private void load(File path) throws IOException {
+        if (!path.exists()) return; // 파일 없으면 첫 가입 때 새로 만든다.
+        try (BufferedReader br = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] parts = line.split(",", 5);
+                if (parts.length < 3) continue; // 깨진 줄은 건너뛴다.
+                UserRecord record = new UserRecord(parts[0], parts[1], parts[2],
+                        parts.length > 3 ? parts[3] : "", parts.length > 4 ? parts[4] : "");
+                records.putIfAbsent(record.userID, record);
+            }
+        }
+    }
+
+    UserRecord get(String userID) {
+        return records.get(userID);
+    }
+
+    boolean contains(String userID) {
+        return records.containsKey(userID);
+    }
+
+    int size() {
+        return records.size();
+    }
+
+    // 새 회원을 추가한다. 이미 있는 ID거나 파일 기록에 실패하면 false.
+    boolean add(UserRecord record) {
+        if (records.putIfAbsent(record.userID, record) != null) {
+            return false; // ID 중복
+        }
+        appendLock.lock();
+        try {
+            log.write(record.toLine());
+            log.write(System.lineSeparator());
+            log.flush();
+            if (FSYNC) file.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            records.remove(record.userID, record); // 기록하지 못했으니 선점을 되돌린다.
+            return false;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+}
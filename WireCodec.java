@@ -0,0 +1,403 @@
+package Chatroom;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// --- [전송 형식 : 텍스트 / 바이너리] ---
+// 예전 프로토콜은 "명령 인자...\n" 형태의 텍스트 한 줄이었고, 받는 쪽은 Scanner.nextLine()(정규식 기반)으로
+// 읽은 뒤 startsWith("REGISTER "), toLowerCase().startsWith("/quit") 같은 문자열 비교로 명령을 골랐다.
+// 이제는 접속 직후에 협상해서 더 간단한 바이너리 형식을 쓸 수 있다.
+//
+//    바이너리 프레임 : [opcode 1바이트][payload 길이 4바이트 (big-endian)][payload (UTF-8)]
+//    payload는 텍스트 명령에서 명령어를 뺀 나머지 (예 : "/whisper bob 안녕" -> WHISPER, "bob 안녕")
+//
+// 협상 순서 (텍스트로 시작한다)
+//    1. 서버 -> SUBMITNAME               (예전과 같다)
+//    2. 클라이언트 -> PROTO BINARY 1     (접속 후 첫 줄일 때만 인정한다)
+//    3. 서버 -> PROTO_OK BINARY          (이 줄까지 텍스트, 다음부터 양쪽 모두 바이너리)
+//    4. 서버 -> SUBMITNAME               (바이너리)
+// 예전 서버는 PROTO 줄을 모르는 명령으로 보고 SUBMITNAME을 한 번 더 보내므로, 클라이언트는
+// PROTO_OK 대신 두 번째 SUBMITNAME을 받으면 텍스트로 계속 쓰면 된다. 예전 클라이언트는 PROTO를
+// 보내지 않으므로 서버도 텍스트로 계속 말한다.
+//
+// 압축 (deflate)
+//    클라이언트가 "PROTO BINARY 1 DEFLATE"로 요청하고 서버가 "PROTO_OK BINARY DEFLATE"로 답하면,
+//    서버는 큰 메시지(접속자 명단, 최근 대화 묶음 등 -Dchat.wire.deflateMin 바이트 이상)를
+//    DEFLATED 프레임 하나로 보낼 수 있다. DEFLATED의 payload는 보통 바이너리 프레임들을 이어 붙여 deflate한 것이다.
+//    압축은 Frame마다 처음 한 번만 하고 모든 접속자가 같은 바이트를 나눠 쓴다. 작거나 줄지 않는 메시지는 그대로 보낸다.
+//
+// 받는 쪽은 텍스트든 바이너리든 Decoder가 (Op, 인자) 한 쌍으로 풀어 준다. 명령을 고르는 일은
+// 바이너리에서는 배열 조회 한 번, 텍스트에서는 접두사 비교뿐이라 줄마다 새 객체를 만들지 않는다.
+// (인자 문자열은 어차피 써야 하므로 만든다)
+final class WireCodec {
+    static final Charset UTF8 = StandardCharsets.UTF_8;
+    static final String PROTO_HELLO = "PROTO BINARY 1";
+    static final String PROTO_OK = "PROTO_OK BINARY";
+    static final String PROTO_HELLO_DEFLATE = "PROTO BINARY 1 DEFLATE";
+    static final String PROTO_OK_DEFLATE = "PROTO_OK BINARY DEFLATE";
+    static final int HEADER = 5;
+    // 프레임 하나의 최대 payload (-Dchat.wire.maxPayload, 기본 1MB). 넘으면 프로토콜 오류로 끊는다.
+    static final int MAX_PAYLOAD = Integer.getInteger("chat.wire.maxPayload", 1 << 20);
+    // 클라이언트가 보내는 한 줄(프레임)의 최대 길이 (-Dchat.wire.maxLine, 기본 8KB).
+    // 줄바꿈 없이 끝없이 보내도 버퍼가 끝없이 커지지 않도록, 다 받기 전에 넘는 순간 끊는다.
+    static final int MAX_LINE = Integer.getInteger("chat.wire.maxLine", 8192);
+    // 압축 : 서버가 허용하는지 (-Dchat.wire.deflate, 기본 true), 이보다 작은 메시지는 압축하지 않는다,
+    // 압축 수준 (1 = 가장 빠름 ~ 9 = 가장 작게)
+    static final boolean DEFLATE = Boolean.parseBoolean(System.getProperty("chat.wire.deflate", "true"));
+    static final int DEFLATE_MIN = Integer.getInteger("chat.wire.deflateMin", 512);
+    static final int DEFLATE_LEVEL = Integer.getInteger("chat.wire.deflateLevel", Deflater.BEST_SPEED);
+
+    // 텍스트 줄에서 명령어 뒤를 어떻게 보는지
+    private enum Match {
+        EXACT,    // "/rooms" 처럼 딱 그 줄이어야 한다.
+        ARGS,     // "LOGIN id pw" 처럼 명령어 뒤에 공백과 인자가 와야 한다.
+        OPTIONAL, // "/leave" 또는 "/leave 방이름"
+        LOOSE     // "/quit"으로 시작하기만 하면 된다. (대소문자 무시, 예전 동작 그대로)
+    }
+
+    enum Op {
+        LINE(0x00, null, true, Match.EXACT), // 명령이 아닌 그냥 한 줄 (일반 채팅, 모르는 줄). 인자 = 줄 전체
+
+        // 클라이언트 -> 서버
+        PROTO(0x01, "PROTO", true, Match.ARGS), // 텍스트로만 오간다.
+        REGISTER(0x02, "REGISTER", true, Match.ARGS),
+        LOGIN(0x03, "LOGIN", true, Match.ARGS),
+        RESUME(0x04, "RESUME", true, Match.ARGS),
+        PONG(0x05, "PONG", true, Match.EXACT), // PING에 대한 답 (IdleReaper). "PONG 안녕"은 그냥 채팅이다.
+        WHISPER(0x10, "/whisper", true, Match.ARGS),
+        QUIT(0x11, "/quit", true, Match.LOOSE),
+        JOIN(0x12, "/join", true, Match.ARGS),
+        LEAVE(0x13, "/leave", true, Match.OPTIONAL),
+        ROOMS(0x14, "/rooms", true, Match.EXACT),
+        SEARCH(0x15, "/search", true, Match.OPTIONAL), // 대화 검색 (SearchIndex)
+
+        // 서버 -> 클라이언트
+        PROTO_OK(0x40, "PROTO_OK", false, Match.OPTIONAL), // 텍스트로만 오간다.
+        SUBMITNAME(0x41, "SUBMITNAME", false, Match.OPTIONAL),
+        LOGIN_SUCCESS(0x42, "LOGIN_SUCCESS", false, Match.OPTIONAL),
+        LOGIN_FAIL(0x43, "LOGIN_FAIL", false, Match.OPTIONAL),
+        REGISTER_SUCCESS(0x44, "REGISTER_SUCCESS", false, Match.OPTIONAL),
+        REGISTER_FAIL(0x45, "REGISTER_FAIL", false, Match.OPTIONAL),
+        NAMEACCEPTED(0x46, "NAMEACCEPTED", false, Match.OPTIONAL),
+        MESSAGE(0x47, "MESSAGE", false, Match.OPTIONAL),
+        USERLIST(0x48, "/userlist", false, Match.OPTIONAL),
+        USERJOIN(0x49, "/userjoin", false, Match.OPTIONAL),
+        USERLEAVE(0x4A, "/userleave", false, Match.OPTIONAL),
+        ROOM(0x4B, "/room", false, Match.OPTIONAL),
+        DEFLATED(0x7F, "DEFLATED", false, Match.ARGS), // 바이너리 전용 : 압축된 프레임 묶음 (텍스트 줄로는 고르지 않는다)
+        PING(0x4C, "PING", false, Match.OPTIONAL), // 한동안 조용한 연결에게 살아 있는지 묻는다.
+        SERVER_RESTART(0x4D, "SERVER_RESTART", false, Match.OPTIONAL); // 서버가 곧 꺼진다. (기다릴ms 재접속토큰)
+
+        final byte code;
+        final String prefix;
+        final boolean fromClient; // 클라이언트가 보내는 명령인지
+        private final Match match;
+
+        Op(int code, String prefix, boolean fromClient, Match match) {
+            this.code = (byte) code;
+            this.prefix = prefix;
+            this.fromClient = fromClient;
+            this.match = match;
+        }
+
+        // 텍스트 한 줄이 이 명령인지 (새 문자열을 만들지 않고 비교만 한다)
+        private boolean matches(String line) {
+            int n = prefix.length();
+            switch (match) {
+                case EXACT:
+                    return line.equals(prefix);
+                case LOOSE:
+                    return line.regionMatches(true, 0, prefix, 0, n);
+                case OPTIONAL:
+                    return line.equals(prefix) || hasArgs(line, n);
+                default:
+                    return hasArgs(line, n);
+            }
+        }
+
+        // "명령 인자..." 꼴인지 (명령 뒤에 공백 하나가 있다)
+        private boolean hasArgs(String line, int n) {
+            return line.length() > n && line.charAt(n) == ' ' && line.startsWith(prefix);
+        }
+
+        // 인자를 다시 텍스트 한 줄로 되돌린다. (이 단계에서 뜻이 없는 명령을 일반 채팅으로 돌릴 때 쓴다)
+        String toText(String args) {
+            if (this == LINE) return args;
+            return args.isEmpty() && match != Match.ARGS ? prefix : prefix + " " + args;
+        }
+    }
+
+    private static final Op[] BY_CODE = new Op[256];
+    private static final Op[] CLIENT_OPS;
+    private static final Op[] SERVER_OPS;
+
+    static {
+        for (Op op : Op.values()) {
+            BY_CODE[op.code & 0xff] = op;
+        }
+        CLIENT_OPS = Arrays.stream(Op.values()).filter(op -> op != Op.LINE && op.fromClient).toArray(Op[]::new);
+        SERVER_OPS = Arrays.stream(Op.values()).filter(op -> op != Op.LINE && op != Op.DEFLATED && !op.fromClient).toArray(Op[]::new);
+    }
+
+    private WireCodec() {
+    }
+
+    // 텍스트 한 줄이 어떤 명령인지 고른다. fromClient : 클라이언트가 보낸 줄인지 (명령 표가 다르다)
+    static Op parse(String line, boolean fromClient) {
+        for (Op op : fromClient ? CLIENT_OPS : SERVER_OPS) {
+            if (op.matches(line)) return op;
+        }
+        return Op.LINE;
+    }
+
+    // parse()로 고른 명령의 인자 부분
+    static String argsOf(Op op, String line) {
+        if (op == Op.LINE) return line;
+        int n = op.prefix.length();
+        return line.length() > n + 1 ? line.substring(n + 1) : "";
+    }
+
+    // 명령 하나를 바이너리 프레임으로 만든다.
+    static byte[] encode(Op op, String args) {
+        byte[] payload = args.getBytes(UTF8);
+        byte[] frame = new byte[HEADER + payload.length];
+        frame[0] = op.code;
+        frame[1] = (byte) (payload.length >>> 24);
+        frame[2] = (byte) (payload.length >>> 16);
+        frame[3] = (byte) (payload.length >>> 8);
+        frame[4] = (byte) payload.length;
+        System.arraycopy(payload, 0, frame, HEADER, payload.length);
+        return frame;
+    }
+
+    // 텍스트 한 줄 -> 바이너리 프레임
+    static byte[] encodeLine(String line, boolean fromClient) {
+        Op op = parse(line, fromClient);
+        return encode(op, argsOf(op, line));
+    }
+
+    // 서버가 보내는 여러 줄짜리 메시지(PresenceBatcher 등)를 줄마다 프레임으로 만들어 이어 붙인다.
+    static byte[] encodeServerLines(String text) {
+        if (text.indexOf('\n') < 0) return encodeLine(text, false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int start = 0;
+        while (true) {
+            int end = text.indexOf('\n', start);
+            String line = end < 0 ? text.substring(start) : text.substring(start, end);
+            out.writeBytes(encodeLine(line, false));
+            if (end < 0) break;
+            start = end + 1;
+        }
+        return out.toByteArray();
+    }
+
+    // 바이너리 프레임(들)을 DEFLATED 프레임 하나로 압축한다. 충분히 작아지지 않으면 null.
+    // 한 Frame에 한 번만 부르므로 Deflater는 그때그때 만들고 바로 닫는다. (스레드마다 들고 있지 않는다)
+    static byte[] deflate(byte[] frames) {
+        Deflater deflater = new Deflater(DEFLATE_LEVEL, true);
+        try {
+            deflater.setInput(frames);
+            deflater.finish();
+            byte[] out = new byte[HEADER + frames.length];
+            int n = HEADER;
+            while (!deflater.finished() && n < out.length) {
+                n += deflater.deflate(out, n, out.length - n);
+            }
+            int payload = n - HEADER;
+            if (!deflater.finished() || n >= frames.length - frames.length / 8) return null; // 1/8도 못 줄였다.
+            out[0] = Op.DEFLATED.code;
+            out[1] = (byte) (payload >>> 24);
+            out[2] = (byte) (payload >>> 16);
+            out[3] = (byte) (payload >>> 8);
+            out[4] = (byte) payload;
+            return Arrays.copyOf(out, n);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // --- [받는 쪽 : 프레임 조립기] ---
+    // 소켓에서 들어온 바이트를 조금씩 받아서 프레임(텍스트 한 줄 또는 바이너리 프레임)이 완성될 때마다
+    // op/args에 결과를 채운다. 접속마다 하나씩 만들고 계속 재사용한다. (스레드 안전하지 않다)
+    //    - NIO : next(ByteBuffer)로 읽기 버퍼에 쌓인 만큼만 처리한다.
+    //    - 블로킹 : read(InputStream)가 프레임 하나가 완성될 때까지 읽는다.
+    // 텍스트 모드에서 협상 줄(PROTO / PROTO_OK)을 만나면 스스로 바이너리 모드로 바뀐다.
+    static final class Decoder {
+        private final boolean fromClient; // 클라이언트가 보낸 것을 읽는지 (서버 쪽이면 true)
+        private final int limit; // 한 줄 / 프레임 payload의 최대 바이트 수
+        private boolean binary;
+        private boolean first = true;
+
+        private byte[] buf = new byte[256]; // 아직 덜 받은 줄 / 프레임을 모아두는 곳
+        private int length;
+        private int need = -1; // 바이너리 : payload 길이 (-1 이면 아직 헤더를 받는 중)
+        private ByteBuffer streamBuffer; // 블로킹 읽기용
+        private ByteBuffer inflated;     // DEFLATED 프레임을 푼 것 (이 안의 프레임부터 돌려준다)
+        private Inflater inflater;
+
+        Op op;       // 방금 완성된 명령
+        String args; // 그 인자
+
+        Decoder(boolean fromClient) {
+            this.fromClient = fromClient;
+            this.limit = fromClient ? Math.min(MAX_LINE, MAX_PAYLOAD) : MAX_PAYLOAD;
+        }
+
+        boolean isBinary() {
+            return binary;
+        }
+
+        // src에서 프레임 하나가 완성되면 true. 모자라면 받은 만큼 모아 두고 false.
+        boolean next(ByteBuffer src) throws ProtocolException {
+            while (true) {
+                if (inflated != null) {
+                    if (nextBinary(inflated)) return true;
+                    inflated = null;
+                }
+                if (!(binary ? nextBinary(src) : nextText(src))) return false;
+                if (op != Op.DEFLATED) return true;
+            }
+        }
+
+        // 블로킹 엔진 / 클라이언트용 : 프레임 하나가 완성될 때까지 읽는다. 연결이 끊기면 false.
+        boolean read(InputStream in) throws IOException {
+            if (streamBuffer == null) streamBuffer = ByteBuffer.allocate(4096).flip();
+            while (!next(streamBuffer)) {
+                streamBuffer.compact();
+                int n = in.read(streamBuffer.array(), streamBuffer.position(), streamBuffer.remaining());
+                if (n < 0) return false;
+                streamBuffer.position(streamBuffer.position() + n);
+                streamBuffer.flip();
+            }
+            return true;
+        }
+
+        private boolean nextText(ByteBuffer src) throws ProtocolException {
+            while (src.hasRemaining()) {
+                byte b = src.get();
+                if (b == '\n') {
+                    int len = length;
+                    if (len > 0 && buf[len - 1] == '\r') len--; // "\r\n" 줄바꿈도 허용한다.
+                    String line = oneLine(new String(buf, 0, len, Frame.CHARSET));
+                    length = 0;
+                    decodeText(line);
+                    return true;
+                }
+                if (length == limit) throw new ProtocolException("줄이 너무 깁니다 (" + limit + " bytes 초과)");
+                if (length == buf.length) buf = Arrays.copyOf(buf, Math.min(buf.length * 2, limit));
+                buf[length++] = b;
+            }
+            return false;
+        }
+
+        private void decodeText(String line) {
+            op = parse(line, fromClient);
+            args = argsOf(op, line);
+            if (op == Op.PROTO) {
+                // 첫 줄에서 우리가 아는 버전을 요청했을 때만 바꾼다. 아니면 그냥 모르는 줄이다.
+                if (first && (args.equals("BINARY 1") || args.equals("BINARY 1 DEFLATE"))) {
+                    binary = true;
+                } else {
+                    op = Op.LINE;
+                    args = line;
+                }
+            } else if (op == Op.PROTO_OK) {
+                binary = true;
+            }
+            first = false;
+        }
+
+        private boolean nextBinary(ByteBuffer src) throws ProtocolException {
+            while (src.hasRemaining()) {
+                if (need < 0) {
+                    buf[length++] = src.get();
+                    if (length == HEADER) {
+                        need = ((buf[1] & 0xff) << 24) | ((buf[2] & 0xff) << 16) | ((buf[3] & 0xff) << 8) | (buf[4] & 0xff);
+                        if (need < 0 || need > limit) {
+                            throw new ProtocolException("프레임이 너무 큽니다 : " + Integer.toUnsignedString(need));
+                        }
+                        Op o = BY_CODE[buf[0] & 0xff];
+                        if (o == null || o.fromClient != fromClient || o == Op.PROTO || o == Op.PROTO_OK) {
+                            throw new ProtocolException("알 수 없는 opcode : " + (buf[0] & 0xff));
+                        }
+                        op = o;
+                        length = 0;
+                        if (buf.length < need) buf = new byte[Math.max(need, buf.length * 2)];
+                    }
+                } else {
+                    int n = Math.min(need - length, src.remaining());
+                    src.get(buf, length, n);
+                    length += n;
+                }
+                if (need >= 0 && length == need) {
+                    if (op == Op.DEFLATED) {
+                        if (src == inflated) throw new ProtocolException("압축 안에 압축이 들어 있습니다.");
+                        inflated = inflate(need);
+                        need = -1;
+                        length = 0;
+                        return true; // next()가 풀린 프레임들부터 돌려준다.
+                    }
+                    args = need == 0 ? "" : oneLine(new String(buf, 0, need, UTF8));
+                    need = -1;
+                    length = 0;
+                    first = false;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // 텍스트 접속자에게 그대로 전달되면 줄이 쪼개져 가짜 명령이 될 수 있으므로 줄을 끊는 글자는 공백으로 바꾼다.
+        // 예전 클라이언트는 Scanner.nextLine으로 읽어서 \n, \r 말고도 U+0085, U+2028, U+2029에서 줄을 나눈다.
+        private static String oneLine(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                if (isLineBreak(s.charAt(i))) {
+                    char[] c = s.toCharArray();
+                    for (int j = i; j < c.length; j++) {
+                        if (isLineBreak(c[j])) c[j] = ' ';
+                    }
+                    return new String(c);
+                }
+            }
+            return s;
+        }
+
+        private static boolean isLineBreak(char c) {
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+
+        // 받은 DEFLATED payload(buf 앞쪽 n바이트)를 푼다. 풀린 크기도 MAX_PAYLOAD를 넘으면 끊는다. (압축 폭탄 방지)
+        private ByteBuffer inflate(int n) throws ProtocolException {
+            if (inflater == null) inflater = new Inflater(true);
+            inflater.reset();
+            inflater.setInput(buf, 0, n);
+            byte[] out = new byte[Math.max(256, n * 4)];
+            int size = 0;
+            try {
+                while (!inflater.finished()) {
+                    if (size == out.length) {
+                        if (out.length >= MAX_PAYLOAD) throw new ProtocolException("압축을 푼 크기가 너무 큽니다.");
+                        out = Arrays.copyOf(out, Math.min(out.length * 2, MAX_PAYLOAD));
+                    }
+                    int r = inflater.inflate(out, size, out.length - size);
+                    if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new ProtocolException("압축된 프레임이 잘렸습니다.");
+                    }
+                    size += r;
+                }
+            } catch (DataFormatException e) {
+                throw new ProtocolException("압축된 프레임을 풀 수 없습니다 : " + e.getMessage());
+            }
+            return ByteBuffer.wrap(out, 0, size);
+        }
+    }
+}
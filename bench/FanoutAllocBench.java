@@ -0,0 +1,86 @@
+package Chatroom;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+// --- [broadcast 메모리 할당 측정] ---
+// broadcast 한 번에 힙을 몇 바이트나 할당하는지 예전 방식과 Frame 방식을 비교한다.
+//    - before : 접속자마다 PrintWriter.println(message) (접속자 수만큼 인코딩 + char 버퍼 복사)
+//    - after  : Frame.of(message) 한 번 + 접속자마다 같은 바이트를 그대로 쓰기 (블로킹 / NIO 뷰)
+// 소켓 대신 아무것도 하지 않는 OutputStream에 쓰므로 순수하게 서버 쪽 비용만 잰다.
+//
+// 실행 : java -cp out Chatroom.FanoutAllocBench [접속자 수] [broadcast 횟수]
+public class FanoutAllocBench {
+    private static final String MESSAGE = "MESSAGE alice: 안녕하세요, 오늘 회의는 3시에 시작합니다. (hello everyone)";
+
+    public static void main(String[] args) throws IOException {
+        int recipients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        OutputStream sink = OutputStream.nullOutputStream();
+        PrintWriter[] writers = new PrintWriter[recipients];
+        for (int i = 0; i < recipients; i++) {
+            writers[i] = new PrintWriter(sink, true);
+        }
+
+        // JIT이 충분히 돌도록 한 번씩 미리 실행해 둔다.
+        for (int i = 0; i < 3; i++) {
+            before(writers, rounds);
+            afterBlocking(sink, recipients, rounds);
+            afterNio(recipients, rounds);
+        }
+
+        System.out.println("접속자 " + recipients + "명, broadcast " + rounds + "회, 메시지 " + Frame.of(MESSAGE).length() + " bytes");
+        report("before (PrintWriter.println x N)", measure(() -> before(writers, rounds)), rounds);
+        report("after  (Frame, blocking writer) ", measure(() -> afterBlocking(sink, recipients, rounds)), rounds);
+        report("after  (Frame, NIO ByteBuffer)  ", measure(() -> afterNio(recipients, rounds)), rounds);
+    }
+
+    private static void before(PrintWriter[] writers, int rounds) {
+        for (int r = 0; r < rounds; r++) {
+            for (PrintWriter writer : writers) {
+                writer.println(MESSAGE);
+            }
+        }
+    }
+
+    private static void afterBlocking(OutputStream sink, int recipients, int rounds) throws IOException {
+        for (int r = 0; r < rounds; r++) {
+            Frame frame = Frame.of(MESSAGE);
+            for (int i = 0; i < recipients; i++) {
+                frame.writeTo(sink, Frame.Wire.TEXT);
+            }
+        }
+    }
+
+    private static long afterNio(int recipients, int rounds) {
+        long total = 0;
+        for (int r = 0; r < rounds; r++) {
+            Frame frame = Frame.of(MESSAGE);
+            for (int i = 0; i < recipients; i++) {
+                ByteBuffer view = frame.buffer(Frame.Wire.TEXT);
+                total += view.remaining();
+            }
+        }
+        return total;
+    }
+
+    private interface Body {
+        void run() throws IOException;
+    }
+
+    private static long measure(Body body) throws IOException {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        long start = mx.getThreadAllocatedBytes(tid);
+        body.run();
+        return mx.getThreadAllocatedBytes(tid) - start;
+    }
+
+    private static void report(String label, long bytes, int rounds) {
+        System.out.printf("%s : broadcast 1회당 %,d bytes 할당%n", label, bytes / rounds);
+    }
+}
@@ -0,0 +1,193 @@
+package Chatroom;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// --- [부하 발생기] ---
+// 화면 없는(headless) 가짜 ChatClient를 수천 명 띄워서 서버에 계속 채팅을 보내고,
+// 처리량(초당 보낸/받은 메시지 수)과 종단 간 전달 지연(보낸 순간 -> 다른 접속자가 받은 순간)을 잰다.
+//    1. 접속자마다 가입(이미 있으면 무시) + 로그인 후 방 R개 중 하나에 들어간다. (방 크기 = 접속자 수 / R)
+//    2. 모두 들어오면 D초 동안 각자 초당 M개씩 "LG 실행번호 보낸시각(nanoTime)"을 보낸다.
+//    3. 받는 쪽은 같은 실행번호의 메시지를 받을 때마다 (지금 - 보낸시각)을 히스토그램에 기록한다.
+//       (보내는 쪽과 받는 쪽이 같은 JVM이라 nanoTime을 그대로 비교할 수 있다)
+// 접속자 하나당 가상 스레드 2개(보내기/받기)를 쓰므로 수천 명도 가볍게 띄울 수 있다.
+// 서버의 -Dchat.outbound.capacity 보다 빨리 보내면 버려지는 메시지가 생기고 "받은 수 / 기대 수"가 줄어든다.
+//
+// 실행 : java -cp out Chatroom.LoadGenerator [접속자 수] [초] [1명당 초당 메시지] [방 수] [host] [port]
+public class LoadGenerator {
+    private static final LongAdder sent = new LongAdder();
+    private static final LongAdder delivered = new LongAdder();
+    private static final LatencyHistogram latency = new LatencyHistogram();
+    private static final AtomicLong lastReceived = new AtomicLong();
+    private static final String RUN = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+        int rooms = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        String host = args.length > 4 ? args[4] : "127.0.0.1";
+        int port = args.length > 5 ? Integer.parseInt(args[5]) : ChatServer.PORT;
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+
+        // 1. 접속 + 로그인 + 방 입장
+        List<SimClient> clients = new ArrayList<>();
+        CountDownLatch ready = new CountDownLatch(users);
+        long loginStart = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            SimClient c = new SimClient("lg" + i, "lg-room-" + (i % rooms), ready);
+            clients.add(c);
+            threads.execute(() -> c.connect(host, port, threads));
+        }
+        if (!ready.await(120, TimeUnit.SECONDS)) {
+            System.out.println("경고 : " + ready.getCount() + "명이 120초 안에 방에 들어가지 못했습니다.");
+        }
+        System.out.printf("%d명 접속 완료 (%dms). 방 %d개, %d초 동안 1명당 초당 %.1f개씩 보냅니다...%n",
+                users, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loginStart), rooms, seconds, rate);
+        waitForQuiet(500); // 입장 알림/최근 대화가 다 지나가게 한다.
+
+        // 2. 보내기
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long intervalNanos = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        CountDownLatch done = new CountDownLatch(clients.size());
+        for (SimClient c : clients) {
+            threads.execute(() -> {
+                try {
+                    c.sendLoop(end, intervalNanos);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        waitForQuiet(1000);
+
+        // 3. 결과
+        int roomSize = users / rooms;
+        long expected = sent.sum() * (roomSize - 1); // 보낸 사람은 받은 수에서 뺀다.
+        System.out.printf("보냄 %,d개 (%.0f/s), 받음 %,d개 (%.0f/s), 기대 %,d개 중 %.1f%%%n",
+                sent.sum(), sent.sum() / elapsed, delivered.sum(), delivered.sum() / elapsed,
+                expected, expected == 0 ? 100.0 : 100.0 * delivered.sum() / expected);
+        System.out.println("전달 지연 : " + latency.summary());
+        for (SimClient c : clients) {
+            c.close();
+        }
+        threads.shutdownNow();
+    }
+
+    // 마지막으로 무언가를 받은 뒤 quietMs 동안 아무것도 오지 않으면 끝난 것으로 본다.
+    private static void waitForQuiet(long quietMs) throws InterruptedException {
+        lastReceived.set(System.nanoTime());
+        while (System.nanoTime() - lastReceived.get() < TimeUnit.MILLISECONDS.toNanos(quietMs)) {
+            Thread.sleep(50);
+        }
+    }
+
+    // 프로토콜만 흉내 내는 머리 없는(headless) 클라이언트
+    private static class SimClient {
+        final String id;
+        final String room;
+        final CountDownLatch ready;
+        final String marker; // 내가 보낸 메시지를 받았을 때 알아보기 위한 앞부분
+        volatile Socket socket;
+        volatile OutputStream out;
+
+        SimClient(String id, String room, CountDownLatch ready) {
+            this.id = id;
+            this.room = room;
+            this.ready = ready;
+            this.marker = "MESSAGE " + id + ": ";
+        }
+
+        void connect(String host, int port, ExecutorService threads) {
+            try {
+                Socket s = new Socket(host, port);
+                socket = s;
+                out = s.getOutputStream();
+                send("REGISTER " + id + " pw " + id + " " + id + "@example.com");
+                send("LOGIN " + id + " pw");
+                threads.execute(() -> readLoop(s));
+            } catch (IOException e) {
+                System.out.println(id + " : " + e);
+                ready.countDown();
+            }
+        }
+
+        private void readLoop(Socket s) {
+            boolean joined = false;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), Frame.CHARSET))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    long now = System.nanoTime();
+                    lastReceived.set(now);
+                    if (line.startsWith("MESSAGE ")) {
+                        int at = line.indexOf(": LG " + RUN + " ");
+                        if (at > 0 && !line.startsWith(marker)) {
+                            long sentAt = Long.parseLong(line.substring(at + 6 + RUN.length()));
+                            latency.recordNanos(now - sentAt);
+                            delivered.increment();
+                        }
+                    } else if (line.equals("PING")) {
+                        send("PONG");
+                    } else if (line.startsWith("NAMEACCEPTED")) {
+                        send("/join " + room);
+                    } else if (line.equals("/room " + room) && !joined) {
+                        joined = true;
+                        ready.countDown();
+                    } else if (line.startsWith("LOGIN_FAIL WRONG_ID_PW")) {
+                        // 가입이 BUSY로 거절되어 아직 없는 ID이다. 잠시 후 가입부터 다시 한다.
+                        Thread.sleep(50 + ThreadLocalRandom.current().nextInt(100));
+                        send("REGISTER " + id + " pw " + id + " " + id + "@example.com");
+                        send("LOGIN " + id + " pw");
+                    } else if (line.startsWith("LOGIN_FAIL")) { // BUSY, ALREADY_LOGGED_IN : 잠시 후 다시 시도한다.
+                        Thread.sleep(50 + ThreadLocalRandom.current().nextInt(100));
+                        send("LOGIN " + id + " pw");
+                    }
+                }
+            } catch (Exception e) {
+                // 연결을 끊으면 여기로 온다.
+            } finally {
+                if (!joined) ready.countDown();
+            }
+        }
+
+        // 모두가 같은 순간에 보내지 않도록 처음에 무작위로 조금 기다린다.
+        void sendLoop(long end, long intervalNanos) {
+            try {
+                long next = System.nanoTime() + ThreadLocalRandom.current().nextLong(intervalNanos);
+                while (next < end) {
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                    send("LG " + RUN + " " + System.nanoTime());
+                    sent.increment();
+                    next += intervalNanos;
+                }
+            } catch (IOException | InterruptedException e) {
+                // 연결이 끊겼다.
+            }
+        }
+
+        private synchronized void send(String line) throws IOException {
+            out.write((line + "\n").getBytes(Frame.CHARSET));
+            out.flush();
+        }
+
+        void close() {
+            try { if (socket != null) socket.close(); } catch (IOException e) {}
+        }
+    }
+}
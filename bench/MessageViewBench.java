@@ -0,0 +1,81 @@
+package Chatroom;
+
+import java.awt.Font;
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+
+// --- [채팅 화면 EDT 시간 측정] ---
+// 메시지 N개가 도착했을 때 EDT가 메시지 1,000개당 몇 ms를 쓰는지 예전 방식과 MessageView를 비교한다.
+//    - before : 줄마다 append + 맨 아래로 스크롤 (문서는 끝없이 커진다)
+//    - after  : MessageView. 한 프레임 동안 도착한 burst개를 한 번에 붙이고, scrollback 줄만 남긴다.
+// 화면 없이(headless) 돌리므로 실제 그리기(paint)는 빠지고, 대신 매 EDT 작업 뒤에 getPreferredSize()를 불러서
+// 화면이 있었다면 했을 줄바꿈 계산(layout)을 시킨다.
+//
+// 실행 : java -Djava.awt.headless=true -cp out Chatroom.MessageViewBench [메시지 수] [프레임당 도착 수] [scrollback]
+public class MessageViewBench {
+    private static final String MESSAGE = "alice: 안녕하세요, 오늘 회의는 3시에 시작합니다. (hello everyone) #";
+
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int burst = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int scrollback = args.length > 2 ? Integer.parseInt(args[2]) : MessageView.SCROLLBACK;
+
+        System.out.println("메시지 " + total + "개, 프레임당 " + burst + "개, scrollback " + scrollback + "줄");
+        before(Math.min(total, 5000)); // JIT이 돌도록 미리 한 번
+        after(Math.min(total, 5000), burst, scrollback);
+        report("before (줄마다 append)         ", before(total), total);
+        report("after  (MessageView, 프레임 묶음)", after(total, burst, scrollback), total);
+    }
+
+    // EDT에서 쓴 시간 (ns)과 마지막 문서 길이
+    private static long[] before(int total) throws InterruptedException, InvocationTargetException {
+        JTextArea area = newArea();
+        long[] result = new long[2];
+        for (int i = 0; i < total; i++) {
+            String line = MESSAGE + i;
+            SwingUtilities.invokeAndWait(() -> {
+                long start = System.nanoTime();
+                area.append(line + "\n");
+                area.setCaretPosition(area.getDocument().getLength());
+                area.getPreferredSize();
+                result[0] += System.nanoTime() - start;
+            });
+        }
+        result[1] = area.getDocument().getLength();
+        return result;
+    }
+
+    private static long[] after(int total, int burst, int scrollback) throws InterruptedException, InvocationTargetException {
+        JTextArea area = newArea();
+        MessageView view = new MessageView(area, scrollback);
+        long[] result = new long[2];
+        for (int i = 0; i < total; i += burst) {
+            for (int j = i; j < Math.min(total, i + burst); j++) {
+                view.append(MESSAGE + j);
+            }
+            // 타이머를 기다리지 않고 프레임 하나가 지난 것처럼 바로 그린다.
+            SwingUtilities.invokeAndWait(() -> {
+                long start = System.nanoTime();
+                view.flush();
+                area.getPreferredSize();
+                result[0] += System.nanoTime() - start;
+            });
+        }
+        result[1] = area.getDocument().getLength();
+        return result;
+    }
+
+    private static JTextArea newArea() {
+        JTextArea area = new JTextArea(16, 50);
+        area.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        area.setLineWrap(true);
+        area.setSize(600, 400);
+        return area;
+    }
+
+    private static void report(String name, long[] result, int total) {
+        System.out.printf("%s : 1,000개당 EDT %8.2f ms, 남은 문서 %,d자%n", name, result[0] / 1e6 * 1000 / total, result[1]);
+    }
+}
@@ -0,0 +1,157 @@
+package Chatroom;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// --- [대량 재접속 부하 테스트] ---
+// 네트워크가 잠깐 끊긴 상황을 흉내 낸다.
+//    1. N명이 로그인해서 자리를 잡는다.
+//    2. N명의 연결을 동시에 끊고 곧바로 다시 로그인한다.
+//    3. 재접속이 모두 끝나고 조용해질 때까지 모든 접속자가 받은 줄 수 / 바이트 수를 센다.
+// 서버를 -Dchat.presence.windowMs=0 (묶지 않음) 과 기본값(100)으로 각각 띄워서 결과를 비교하면 된다.
+// -Dstorm.resume=true 로 실행하면 2번에서 비밀번호 대신 처음 로그인 때 받은 재접속 토큰(RESUME)을 쓴다.
+// (LOGIN과 소요 시간을 비교하면 비밀번호 해시를 건너뛴 만큼의 차이가 보인다)
+//
+// 실행 : java -cp out Chatroom.ReconnectStorm [접속자 수] [host] [port]
+public class ReconnectStorm {
+    private static final LongAdder lines = new LongAdder();
+    private static final LongAdder bytes = new LongAdder();
+    private static final AtomicLong lastReceived = new AtomicLong();
+    private static final boolean RESUME = Boolean.getBoolean("storm.resume");
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        String host = args.length > 1 ? args[1] : "127.0.0.1";
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : ChatServer.PORT;
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+
+        // 1. 회원가입 (이미 있으면 실패해도 상관없다) 후 로그인
+        List<SimClient> clients = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            clients.add(new SimClient("storm" + i, host, port));
+        }
+        connectAll(clients, threads, true);
+        waitForQuiet(1000);
+        System.out.println(users + "명 로그인 완료. 연결을 모두 끊고 다시 접속합니다...");
+
+        // 2. 동시에 끊고 다시 로그인
+        lines.reset();
+        bytes.reset();
+        long start = System.nanoTime();
+        for (SimClient c : clients) {
+            c.close();
+        }
+        connectAll(clients, threads, false);
+        waitForQuiet(1000);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) - 1000;
+
+        System.out.printf("재접속 %d명 : 모든 접속자가 받은 줄 %,d개 / %,d bytes (1명당 %.1f줄), 소요 %dms%n",
+                users, lines.sum(), bytes.sum(), (double) lines.sum() / users, elapsedMs);
+        for (SimClient c : clients) {
+            c.close();
+        }
+        threads.shutdownNow();
+    }
+
+    private static void connectAll(List<SimClient> clients, ExecutorService threads, boolean register)
+            throws InterruptedException {
+        CountDownLatch accepted = new CountDownLatch(clients.size());
+        for (SimClient c : clients) {
+            threads.execute(() -> {
+                try {
+                    c.connect(register, accepted, threads);
+                } catch (IOException e) {
+                    System.out.println(c.id + " : " + e);
+                    accepted.countDown();
+                }
+            });
+        }
+        if (!accepted.await(60, TimeUnit.SECONDS)) {
+            System.out.println("경고 : " + accepted.getCount() + "명이 60초 안에 로그인하지 못했습니다.");
+        }
+    }
+
+    // 마지막으로 무언가를 받은 뒤 quietMs 동안 아무것도 오지 않으면 끝난 것으로 본다.
+    private static void waitForQuiet(long quietMs) throws InterruptedException {
+        lastReceived.set(System.nanoTime());
+        while (System.nanoTime() - lastReceived.get() < TimeUnit.MILLISECONDS.toNanos(quietMs)) {
+            Thread.sleep(50);
+        }
+    }
+
+    // 프로토콜만 흉내 내는 머리 없는(headless) 클라이언트
+    private static class SimClient {
+        final String id;
+        final String host;
+        final int port;
+        volatile Socket socket;
+        volatile String token; // LOGIN_SUCCESS와 함께 받은 재접속 토큰
+
+        SimClient(String id, String host, int port) {
+            this.id = id;
+            this.host = host;
+            this.port = port;
+        }
+
+        void connect(boolean register, CountDownLatch accepted, ExecutorService threads) throws IOException {
+            Socket s = new Socket(host, port);
+            socket = s;
+            OutputStream out = s.getOutputStream();
+            if (register) send(out, "REGISTER " + id + " pw " + id + " " + id + "@example.com");
+            send(out, login());
+            threads.execute(() -> readLoop(s, out, accepted));
+        }
+
+        private void readLoop(Socket s, OutputStream out, CountDownLatch accepted) {
+            boolean counted = false;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), Frame.CHARSET))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    lines.increment();
+                    bytes.add(line.getBytes(Frame.CHARSET).length + 1);
+                    lastReceived.set(System.nanoTime());
+                    if (line.startsWith("LOGIN_SUCCESS ")) {
+                        String[] parts = line.split(" ", 3);
+                        if (parts.length == 3) token = parts[2];
+                    } else if (line.startsWith("NAMEACCEPTED") && !counted) {
+                        counted = true;
+                        accepted.countDown();
+                    } else if (line.startsWith("LOGIN_FAIL ALREADY_LOGGED_IN") || line.startsWith("LOGIN_FAIL BUSY")) {
+                        // 예전 세션의 퇴장 처리가 아직 안 끝났다. 잠깐 뒤에 다시 시도한다.
+                        Thread.sleep(50);
+                        send(out, login());
+                    }
+                }
+            } catch (Exception e) {
+                // 연결을 끊으면 여기로 온다.
+            } finally {
+                if (!counted) accepted.countDown();
+            }
+        }
+
+        private String login() {
+            String t = token;
+            return RESUME && t != null ? "RESUME " + t : "LOGIN " + id + " pw";
+        }
+
+        private static void send(OutputStream out, String line) throws IOException {
+            out.write((line + "\n").getBytes(Frame.CHARSET));
+            out.flush();
+        }
+
+        void close() {
+            try { if (socket != null) socket.close(); } catch (IOException e) {}
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package Chatroom;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+// --- [대화 검색 측정] ---
+// 가짜 채팅 메시지 N개를 SearchIndex에 넣고(디스크 segment로 내려 쓰는 것까지) 검색어 몇 개로
+//    - index : 색인에서 최근 20개 찾기 (/search가 하는 일)
+//    - scan  : 같은 메시지를 대화 기록 형식 파일로 써 두고 처음부터 끝까지 읽으며 찾기 (색인이 없을 때의 방법)
+// 를 비교한다. 흔한 단어 / 드문 단어 / 두 단어 / 한글 단어 / 한 글자 / 한글이 붙은 영어 단어("ci빌드"를 "ci"로)를 섞었다.
+// segment 크기는 -Dchat.search.segmentDocs 로 바꿔 볼 수 있다.
+//
+// 실행 : java -cp out Chatroom.SearchBench [메시지 수] [반복 수]
+public class SearchBench {
+    private static final String[] NAMES = {"alice", "bob", "철수", "영희", "mallory", "trent"};
+    private static final String[] WORDS = {"안녕하세요", "회의는", "배포", "내일", "오전", "점심", "자료", "공유", "확인했습니다",
+            "ci빌드", "hello", "deploy", "review", "the", "build", "is", "green", "release", "ticket", "lunch", "thanks"};
+    private static final String[] QUERIES = {"the", "회의", "회", "ci", "deploy green", "ticket 4242", "mallory release", "없는단어"};
+
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        File dir = Files.createTempDirectory("chat-search").toFile();
+        File log = new File(dir, "messages.log");
+        File indexDir = new File(dir, "index");
+        try {
+            SearchIndex index = SearchIndex.open(indexDir);
+            Random random = new Random(42);
+            long start = System.nanoTime();
+            long offset = 0;
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(log), StandardCharsets.UTF_8))) {
+                for (int i = 0; i < total; i++) {
+                    String line = "MESSAGE " + NAMES[random.nextInt(NAMES.length)] + ": " + sentence(random);
+                    String room = "room" + random.nextInt(10);
+                    String record = i + "\t" + room + "\t" + line + "\n";
+                    out.write(record);
+                    offset += record.getBytes(StandardCharsets.UTF_8).length;
+                    index.add(i, room, line, new SearchIndex.LogPosition(1, offset));
+                }
+            }
+            index.close();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("메시지 %,d개 색인 + 기록 : %.1f초 (초당 %,.0f개), 색인 파일 %,d KB / 기록 파일 %,d KB%n",
+                    total, seconds, total / seconds, size(indexDir) / 1024, log.length() / 1024);
+
+            System.out.println("검색어                찾은 수   index(ms)    scan(ms)");
+            for (String query : QUERIES) {
+                List<String> words = SearchIndex.words(query);
+                index.search(words, SearchIndex.MAX_RESULTS); // 미리 한 번 (페이지 캐시, JIT)
+                int found = 0;
+                start = System.nanoTime();
+                for (int i = 0; i < rounds; i++) {
+                    found = index.search(words, SearchIndex.MAX_RESULTS).size();
+                }
+                double indexMs = (System.nanoTime() - start) / 1e6 / rounds;
+                start = System.nanoTime();
+                int scanRounds = Math.max(1, rounds / 10); // 훑기는 느리므로 조금만
+                for (int i = 0; i < scanRounds; i++) {
+                    scan(log, words);
+                }
+                double scanMs = (System.nanoTime() - start) / 1e6 / scanRounds;
+                System.out.printf("%-20s %8d %11.3f %11.1f%n", query, found, indexMs, scanMs);
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static String sentence(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int n = 4 + random.nextInt(8);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (random.nextInt(10) == 0) sb.append(" ticket ").append(random.nextInt(10_000));
+        return sb.toString();
+    }
+
+    // 색인 없이 찾기 : 기록 파일을 전부 읽으며 모든 단어가 든 줄을 세어 최근 것만 남긴다.
+    private static int scan(File log, List<String> words) throws IOException {
+        int found = 0;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(log), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String text = line.toLowerCase(Locale.ROOT);
+                boolean all = true;
+                for (String word : words) {
+                    if (!text.contains(word)) {
+                        all = false;
+                        break;
+                    }
+                }
+                if (all) found++;
+            }
+        }
+        return found;
+    }
+
+    private static long size(File dir) {
+        long n = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                n += f.length();
+            }
+        }
+        return n;
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,117 @@
+package Chatroom;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
+// --- [TLS 재접속 핸드셰이크 측정] ---
+// 같은 서버에 N번 다시 붙을 때 연결 + 핸드셰이크에 걸리는 시간을 비교한다.
+//    - full    : 매번 세션 캐시가 빈 새 SSLContext (재개 없이 인증서 검증 + 키 교환을 처음부터)
+//    - resumed : ChatClient처럼 SSLContext 하나를 계속 쓴다. (지난번에 받은 세션 티켓으로 재개)
+// 서버는 이 프로세스 안에서 TlsSupport.serverContext()로 띄운다.
+// -Dchat.tls.keystore / -Dchat.tls.truststore 를 주지 않으면 JDK의 keytool로 임시 키 저장소를 만들어 쓴다.
+//
+// 실행 : java -cp out Chatroom.TlsResumeBench [재접속 횟수]
+public class TlsResumeBench {
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        if (System.getProperty("chat.tls.keystore") == null) generateKeyStores();
+
+        SSLServerSocket listener = (SSLServerSocket) TlsSupport.serverContext().getServerSocketFactory().createServerSocket();
+        listener.setEnabledProtocols(TlsSupport.protocols());
+        listener.bind(new InetSocketAddress("127.0.0.1", 0));
+        int port = listener.getLocalPort();
+        ExecutorService server = Executors.newVirtualThreadPerTaskExecutor();
+        server.execute(() -> acceptLoop(listener, server));
+
+        connect(TlsSupport.newClientContext(), port, rounds / 10); // JIT이 돌도록 미리
+        connect(TlsSupport.newClientContext(), port, rounds / 10);
+        long full = 0;
+        for (int i = 0; i < rounds; i++) {
+            full += connect(TlsSupport.newClientContext(), port, 1);
+        }
+        SSLContext reused = TlsSupport.newClientContext();
+        connect(reused, port, 1); // 첫 연결에서 티켓을 받는다.
+        long resumed = connect(reused, port, rounds);
+
+        System.out.printf("재접속 %d번 : full %.3f ms / resumed %.3f ms (연결 1번 평균)%n",
+                rounds, full / 1e6 / rounds, resumed / 1e6 / rounds);
+        listener.close();
+        server.shutdownNow();
+    }
+
+    // count번 연결해서 핸드셰이크를 마치고 서버가 보낸 1바이트를 받을 때까지의 시간 합 (ns)
+    // TLS 1.3의 세션 티켓은 핸드셰이크 뒤에 오므로, 1바이트를 읽어야 다음 연결에서 재개할 수 있다.
+    private static long connect(SSLContext context, int port, int count) throws Exception {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            Socket plain = new Socket();
+            plain.connect(new InetSocketAddress("127.0.0.1", port));
+            try (SSLSocket socket = TlsSupport.wrapClient(context, plain, "localhost", port)) {
+                if (socket.getInputStream().read() < 0) throw new IOException("서버가 먼저 끊었습니다.");
+                total += System.nanoTime() - start;
+            }
+        }
+        return total;
+    }
+
+    private static void acceptLoop(SSLServerSocket listener, ExecutorService server) {
+        try {
+            while (true) {
+                Socket socket = listener.accept();
+                server.execute(() -> {
+                    try (Socket s = socket) {
+                        s.setTcpNoDelay(true); // 서버와 같다.
+                        ((SSLSocket) s).startHandshake();
+                        s.getOutputStream().write('!');
+                        s.getOutputStream().flush();
+                        InputStream in = s.getInputStream();
+                        while (in.read() >= 0) {
+                            // 클라이언트가 닫을 때까지 기다린다.
+                        }
+                    } catch (IOException e) {
+                        // 끊겼다.
+                    }
+                });
+            }
+        } catch (IOException e) {
+            // listener를 닫았다.
+        }
+    }
+
+    // 임시 디렉터리에 서버 키(server.p12)와 그 인증서만 든 클라이언트 신뢰 저장소(client.p12)를 만든다.
+    private static void generateKeyStores() throws IOException, InterruptedException {
+        File dir = Files.createTempDirectory("chat-tls").toFile();
+        dir.deleteOnExit();
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+        String server = new File(dir, "server.p12").getPath();
+        String client = new File(dir, "client.p12").getPath();
+        String cert = new File(dir, "chat.cer").getPath();
+        String password = System.getProperty("chat.tls.password", "changeit");
+        keytool(keytool, "-genkeypair", "-alias", "chat", "-keyalg", "EC", "-groupname", "secp256r1", "-validity", "1",
+                "-dname", "CN=localhost", "-ext", "san=dns:localhost,ip:127.0.0.1", "-keystore", server, "-storepass", password);
+        keytool(keytool, "-exportcert", "-alias", "chat", "-keystore", server, "-storepass", password, "-file", cert);
+        keytool(keytool, "-importcert", "-noprompt", "-alias", "chat", "-file", cert, "-keystore", client, "-storepass", password);
+        for (String name : new String[] {server, client, cert}) {
+            new File(name).deleteOnExit();
+        }
+        System.setProperty("chat.tls.keystore", server);
+        System.setProperty("chat.tls.truststore", client);
+    }
+
+    private static void keytool(String... command) throws IOException, InterruptedException {
+        Process p = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = new String(p.getInputStream().readAllBytes());
+        if (p.waitFor() != 0) throw new IOException("keytool 실패 : " + output);
+    }
+}
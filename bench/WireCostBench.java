@@ -0,0 +1,98 @@
+package Chatroom;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+// --- [압축 비용 / 절약 측정] ---
+// 큰 메시지(입장할 때 받는 /userlist 명단, 최근 대화 묶음)를 텍스트 / 바이너리 / 압축(deflate)으로 보낼 때
+//    - 실제로 나가는 바이트 수
+//    - 서버가 Frame 하나를 압축하는 데 드는 시간 (Frame마다 한 번, 받는 사람 수와 상관없다)
+//    - 클라이언트가 그것을 푸는 데 드는 시간 (받는 사람마다 한 번)
+// 을 잰다. 압축 수준은 -Dchat.wire.deflateLevel (1 ~ 9), 압축 여부 기준은 -Dchat.wire.deflateMin 으로 바꿔 볼 수 있다.
+//
+// 실행 : java -cp out Chatroom.WireCostBench [반복 수]
+public class WireCostBench {
+    private static final OutputStream NULL = OutputStream.nullOutputStream();
+    static volatile long sink; // 결과를 버리지 않게 (JIT이 반복을 지우지 못하게) 모아 둔다.
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        System.out.println("압축 수준 " + WireCodec.DEFLATE_LEVEL + ", " + WireCodec.DEFLATE_MIN + "바이트 이상만 압축, 반복 " + iterations + "번");
+        System.out.println("메시지                     텍스트      바이너리    압축        절약   압축(µs)  풀기(µs)");
+        for (int users : new int[] {10, 100, 1000}) {
+            measure("/userlist " + users + "명", userList(users), iterations);
+        }
+        measure("최근 대화 50줄", history(50), iterations);
+        measure("채팅 한 줄", "MESSAGE alice: 안녕하세요, 오늘 회의는 3시에 시작합니다.", iterations);
+    }
+
+    private static String userList(int users) {
+        StringBuilder sb = new StringBuilder("/userlist ");
+        Random random = new Random(users);
+        for (int i = 0; i < users; i++) {
+            sb.append("user").append(random.nextInt(1_000_000)).append(',');
+        }
+        return sb.toString();
+    }
+
+    private static String history(int lines) {
+        String[] names = {"alice", "bob", "철수", "영희", "mallory"};
+        String[] texts = {"안녕하세요, 오늘 회의는 3시에 시작합니다.", "자료는 공유 폴더에 올려 두었어요", "ok 확인했습니다",
+                "배포는 내일 오전으로 미룰게요 (hotfix 먼저)", "ㅋㅋㅋ 점심 뭐 먹죠?"};
+        Random random = new Random(lines);
+        StringBuilder sb = new StringBuilder("MESSAGE [시스템] --- 최근 대화 " + lines + "개 ---");
+        for (int i = 0; i < lines; i++) {
+            sb.append("\nMESSAGE ").append(names[random.nextInt(names.length)]).append(": ")
+                    .append(texts[random.nextInt(texts.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static void measure(String name, String text, int iterations) throws Exception {
+        Frame sample = Frame.of(text);
+        int textBytes = written(sample, Frame.Wire.TEXT);
+        int binaryBytes = written(sample, Frame.Wire.BINARY);
+        byte[] deflated = bytes(sample, Frame.Wire.DEFLATE);
+
+        // 서버 : Frame을 새로 만들 때마다 한 번 압축한다.
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += written(Frame.of(text), Frame.Wire.DEFLATE);
+        }
+        double deflateMicros = (System.nanoTime() - start) / 1e3 / iterations;
+
+        // 클라이언트 : 받은 바이트를 Decoder로 풀어서 프레임들을 꺼낸다.
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += decode(deflated);
+        }
+        double inflateMicros = (System.nanoTime() - start) / 1e3 / iterations;
+
+        System.out.printf("%-20s %,10d %,10d %,10d %6.1f%% %9.1f %9.1f%n", name, textBytes, binaryBytes, deflated.length,
+                100.0 * (binaryBytes - deflated.length) / binaryBytes, deflateMicros, inflateMicros);
+    }
+
+    private static int written(Frame frame, Frame.Wire wire) throws Exception {
+        return frame.writeTo(NULL, wire);
+    }
+
+    private static byte[] bytes(Frame frame, Frame.Wire wire) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        frame.writeTo(out, wire);
+        return out.toByteArray();
+    }
+
+    // 협상을 마친 클라이언트 Decoder가 받은 것을 모두 꺼낸다. 꺼낸 프레임 수를 돌려준다.
+    private static int decode(byte[] received) throws Exception {
+        WireCodec.Decoder decoder = new WireCodec.Decoder(false);
+        decoder.next(ByteBuffer.wrap((WireCodec.PROTO_OK_DEFLATE + "\n").getBytes(Frame.CHARSET)));
+        ByteBuffer src = ByteBuffer.wrap(received);
+        int n = 0;
+        while (decoder.next(src)) {
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,67 @@
+package Chatroom;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// --- [JMH : 회원가입 / 로그인] ---
+// AuthService의 정적 메서드를 작업자 풀 없이 바로 부른다. (대기열 시간은 빼고 순수한 처리 비용만)
+//    - register : Salt 생성 + 해시 + 메모리 색인 선점 + users.dat 한 줄 덧붙이기 (매번 새 ID)
+//    - login    : 색인 조회 + 해시 비교 (맞는 비밀번호 / 틀린 비밀번호 / 없는 ID)
+// users.dat 대신 임시 파일을 쓰고 끝나면 지운다.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthBench {
+    private final AtomicLong seq = new AtomicLong();
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("users", ".dat").toFile();
+        ChatServer.users = UserStore.open(file.getPath());
+        AuthService.registerUser("bench", "secret", "Bench", "bench@example.com");
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public boolean register() {
+        return AuthService.registerUser("user" + seq.incrementAndGet(), "secret", "User", "user@example.com");
+    }
+
+    @Benchmark
+    public boolean loginOk() {
+        return AuthService.authenticateUser("bench", "secret");
+    }
+
+    @Benchmark
+    public boolean loginWrongPassword() {
+        return AuthService.authenticateUser("bench", "wrong");
+    }
+
+    @Benchmark
+    public boolean loginUnknownUser() {
+        return AuthService.authenticateUser("nobody", "secret");
+    }
+}
@@ -0,0 +1,86 @@
+package Chatroom;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// --- [JMH : 방송 (fan-out)] ---
+// 메시지 하나를 접속자 N명에게 보내는 비용. 소켓 대신 아무것도 하지 않는 OutputStream에 쓴다.
+//    - enqueue : Frame.of 한 번 + N개의 송신 대기열(OutboundQueue)에 넣기. (방송하는 스레드가 하는 일)
+//    - deliver : enqueue + 각 대기열을 비우면서 sink에 쓰기. (writer가 하는 일까지)
+// wire=binary면 바이너리로 협상한 접속자에게 쓰는 바이트(처음 한 번만 인코딩)를 쓴다.
+// wire=deflate면 압축까지 협상한 접속자용 바이트를 쓴다. (이 메시지는 deflateMin보다 작아서 압축하지 않고 그대로 나간다)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanoutBench {
+    private static final String MESSAGE = "MESSAGE alice: 안녕하세요, 오늘 회의는 3시에 시작합니다. (hello everyone)";
+
+    @Param({"10", "100", "1000"})
+    int recipients;
+
+    @Param({"text", "binary", "deflate"})
+    String wire;
+
+    private OutboundQueue[] queues;
+    private final List<Frame> batch = new ArrayList<>();
+    private final OutputStream sink = OutputStream.nullOutputStream();
+    private Frame.Wire frameWire;
+
+    @Setup
+    public void setup() {
+        queues = new OutboundQueue[recipients];
+        for (int i = 0; i < recipients; i++) {
+            queues[i] = new OutboundQueue(null, null);
+        }
+        frameWire = Frame.Wire.valueOf(wire.toUpperCase());
+    }
+
+    @Benchmark
+    public int enqueue() {
+        Frame frame = Frame.of(MESSAGE);
+        for (OutboundQueue q : queues) {
+            q.send(frame);
+        }
+        int n = 0;
+        for (OutboundQueue q : queues) { // 대기열이 넘치지 않게 비워 둔다. (쓰지는 않는다)
+            n += q.drainTo(batch);
+            batch.clear();
+        }
+        return n;
+    }
+
+    @Benchmark
+    public long deliver() throws IOException {
+        Frame frame = Frame.of(MESSAGE);
+        for (OutboundQueue q : queues) {
+            q.send(frame);
+        }
+        long written = 0;
+        for (OutboundQueue q : queues) {
+            q.drainTo(batch);
+            for (Frame f : batch) {
+                written += f.writeTo(sink, frameWire);
+            }
+            batch.clear();
+        }
+        return written;
+    }
+}
@@ -0,0 +1,98 @@
+package Chatroom;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// --- [JMH : 받은 명령 풀기] ---
+// 클라이언트가 보낸 명령 LINES개를 한 덩어리로 받았을 때 명령 하나당 비용을 비교한다.
+//    - scanner       : 예전 Handler 방식. Scanner.nextLine() 후 startsWith로 명령 고르기
+//    - decoderText   : WireCodec.Decoder (텍스트 줄)
+//    - decoderBinary : WireCodec.Decoder (바이너리 프레임)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBench {
+    private static final int LINES = 100;
+    private static final String[] SAMPLE = {
+            "안녕하세요, 오늘 회의는 3시에 시작합니다. (hello everyone)",
+            "/whisper bob 잠깐 이야기할 수 있어?",
+            "/join dev",
+            "ok",
+            "/rooms",
+    };
+
+    private byte[] text;
+    private byte[] binary;
+
+    @Setup
+    public void setup() {
+        ByteArrayOutputStream t = new ByteArrayOutputStream();
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        for (int i = 0; i < LINES; i++) {
+            String line = SAMPLE[i % SAMPLE.length];
+            t.writeBytes((line + "\n").getBytes(Frame.CHARSET));
+            b.writeBytes(WireCodec.encodeLine(line, true));
+        }
+        text = t.toByteArray();
+        binary = b.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void scanner(Blackhole bh) {
+        Scanner in = new Scanner(new ByteArrayInputStream(text), Frame.CHARSET);
+        while (in.hasNextLine()) {
+            String line = in.nextLine();
+            if (line.toLowerCase().startsWith("/quit")) {
+                bh.consume(0);
+            } else if (line.startsWith("/whisper ")) {
+                bh.consume(line.substring(9).split(" ", 2));
+            } else if (line.startsWith("/join ")) {
+                bh.consume(line.substring(6));
+            } else {
+                bh.consume(line);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void decoderText(Blackhole bh) throws ProtocolException {
+        decode(new WireCodec.Decoder(true), ByteBuffer.wrap(text), bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void decoderBinary(Blackhole bh) throws ProtocolException {
+        WireCodec.Decoder decoder = new WireCodec.Decoder(true);
+        decoder.next(ByteBuffer.wrap((WireCodec.PROTO_HELLO + "\n").getBytes(Frame.CHARSET))); // 바이너리로 바꾼다.
+        decode(decoder, ByteBuffer.wrap(binary), bh);
+    }
+
+    private static void decode(WireCodec.Decoder decoder, ByteBuffer src, Blackhole bh) throws ProtocolException {
+        while (decoder.next(src)) {
+            bh.consume(decoder.op);
+            bh.consume(decoder.args);
+        }
+    }
+}